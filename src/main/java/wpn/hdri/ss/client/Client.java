@@ -33,6 +33,11 @@ import wpn.hdri.ss.client2.ClientAdaptor;
 import wpn.hdri.ss.data.Method;
 
 import java.util.EnumMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Abstract base class for Tango or Tine client.
@@ -46,6 +51,19 @@ public abstract class Client implements ClientAdaptor {
      * Fully qualified device name. E.g. for Tango: sys/tg_test/1
      */
     private final String deviceName;
+    /**
+     * Limits blocking requests to the device, null - unlimited, see {@link ClientFactory}
+     */
+    private volatile Semaphore requests;
+    /**
+     * Limits blocking requests to the host, shared by its clients, null - unlimited, see {@link ClientFactory}
+     */
+    private volatile Semaphore hostRequests;
+    /**
+     * Runs blocking requests on behalf of non blocking calls, null - the caller's thread, see {@link ClientFactory}
+     */
+    private volatile Executor blockingRequests;
+    private volatile long lastUsed = System.nanoTime();
 
     protected Client(String deviceName) {
         this.deviceName = deviceName;
@@ -58,6 +76,106 @@ public abstract class Client implements ClientAdaptor {
         return deviceName;
     }
 
+    void setRequests(Semaphore requests) {
+        this.requests = requests;
+    }
+
+    void setHostRequests(Semaphore hostRequests) {
+        this.hostRequests = hostRequests;
+    }
+
+    /**
+     * Must be followed by {@link #release()}, blocks while the device or its host is busy with other requests.
+     * The device permit is taken first, so requests queued for a hung device do not hold permits of the host
+     *
+     * @throws ClientException if interrupted while waiting
+     */
+    protected void acquire() throws ClientException {
+        touch();
+        Semaphore requests = this.requests;
+        Semaphore hostRequests = this.hostRequests;
+        try {
+            if (requests != null) requests.acquire();
+            try {
+                if (hostRequests != null) hostRequests.acquire();
+            } catch (InterruptedException e) {
+                if (requests != null) requests.release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for " + deviceName, e);
+        }
+    }
+
+    protected void release() {
+        Semaphore hostRequests = this.hostRequests;
+        if (hostRequests != null) hostRequests.release();
+        Semaphore requests = this.requests;
+        if (requests != null) requests.release();
+    }
+
+    void setBlockingRequests(Executor blockingRequests) {
+        this.blockingRequests = blockingRequests;
+    }
+
+    /**
+     * @return bounded executor for requests that can only be made by a blocking call
+     */
+    protected Executor getBlockingRequests() {
+        Executor result = this.blockingRequests;
+        return result != null ? result : Runnable::run;
+    }
+
+    /**
+     * Runs a blocking request on behalf of a non blocking call, see {@link #getBlockingRequests()}
+     *
+     * @return future of the request, it fails with ClientException if there is no room for the request
+     */
+    protected <T> CompletableFuture<T> callBlocking(final Callable<T> request) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            getBlockingRequests().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.complete(request.call());
+                    } catch (Exception e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new ClientException("Too many blocking requests, request to " + deviceName + " is rejected", e));
+        }
+        return result;
+    }
+
+    protected void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the last request
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Opens the connection to the device ahead of the first request
+     *
+     * @throws ClientException if the device can not be reached
+     */
+    public abstract void connect() throws ClientException;
+
+    /**
+     * Releases the connection unless there are event subscriptions, the next request reconnects
+     *
+     * @return true if the connection has been released
+     */
+    public abstract boolean disconnect();
+
     /**
      * Returns appropriate Java type of the attribute's value, i.e. Integer or Long or whatever.
      *
@@ -31,11 +31,34 @@ package wpn.hdri.ss.client;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import wpn.hdri.ss.engine2.NamedThreadFactory;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Aggregates TINE and Tango client factories
+ * <p/>
+ * Also keeps a registry of clients, so devices with the same url share a single client and its connection, see
+ * {@link #getClient(String)}. Each device may be limited in the number of concurrent blocking requests, so a device
+ * that hangs does not hold up the others. Devices of the same host may be limited as a whole as well, so the host is
+ * not flooded. Idle clients release their connections.
  *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 27.04.12
@@ -43,6 +66,49 @@ import java.net.URI;
 public class ClientFactory {
     private static final Logger logger = LoggerFactory.getLogger(ClientFactory.class);
 
+    /**
+     * Threads that run blocking requests of non blocking calls, shared by all clients
+     */
+    static final int BLOCKING_REQUEST_THREADS = 8;
+    /**
+     * Blocking requests waiting for a thread, further requests are rejected
+     */
+    static final int BLOCKING_REQUEST_QUEUE = 1024;
+
+    private final int maxRequestsPerHost;
+    private final int maxRequestsPerDevice;
+    private final long idleTimeout;
+
+    /**
+     * Normalized device url -> client
+     */
+    private final ConcurrentMap<String, Client> clients = new ConcurrentHashMap<>();
+    /**
+     * Host -> permits for blocking requests
+     */
+    private final ConcurrentMap<String, Semaphore> hostRequests = new ConcurrentHashMap<>();
+    private final ExecutorService blockingRequests = new ThreadPoolExecutor(BLOCKING_REQUEST_THREADS, BLOCKING_REQUEST_THREADS,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(BLOCKING_REQUEST_QUEUE), new NamedThreadFactory("client-request"));
+    private volatile ScheduledExecutorService eviction;
+
+    public ClientFactory() {
+        this(0, 0, 0L);
+    }
+
+    /**
+     * @param maxRequestsPerHost blocking requests per host, 0 - unlimited
+     * @param maxRequestsPerDevice blocking requests per device, 0 - unlimited
+     * @param idleTimeout ms after which an unused client releases its connection, 0 - never
+     */
+    public ClientFactory(int maxRequestsPerHost, int maxRequestsPerDevice, long idleTimeout) {
+        if (maxRequestsPerHost < 0) throw new IllegalArgumentException("maxRequestsPerHost must be positive!");
+        if (maxRequestsPerDevice < 0) throw new IllegalArgumentException("maxRequestsPerDevice must be positive!");
+        if (idleTimeout < 0) throw new IllegalArgumentException("idleTimeout must be positive!");
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.maxRequestsPerDevice = maxRequestsPerDevice;
+        this.idleTimeout = idleTimeout;
+    }
+
     /**
      * Creates an instance of either {@link TangoClient} or {@link TineClient} or null.
      * <p/>
@@ -66,4 +132,153 @@ public class ClientFactory {
                 throw new IllegalArgumentException("Unknown device uri scheme:" + uri.getScheme());
         }
     }
+
+    /**
+     * @param deviceUrl a device name, see {@link #createClient(String)}
+     * @return the client registered for the url, a new client is created and registered on the first call
+     */
+    public Client getClient(String deviceUrl) {
+        String key = normalize(deviceUrl);
+        Client client = clients.get(key);
+        if (client != null) return client;
+
+        client = createClient(deviceUrl);
+        if (maxRequestsPerDevice > 0) client.setRequests(new Semaphore(maxRequestsPerDevice));
+        if (maxRequestsPerHost > 0) {
+            Semaphore requests = hostRequests.get(getHost(key));
+            if (requests == null) {
+                Semaphore created = new Semaphore(maxRequestsPerHost);
+                requests = hostRequests.putIfAbsent(getHost(key), created);
+                if (requests == null) requests = created;
+            }
+            client.setHostRequests(requests);
+        }
+        client.setBlockingRequests(blockingRequests);
+        Client existing = clients.putIfAbsent(key, client);
+        if (existing != null) return existing;
+        if (idleTimeout > 0) startEviction();
+        return client;
+    }
+
+    /**
+     * Opens connections of the clients in parallel, failures are logged and the clients reconnect on the first request
+     *
+     * @param threads max number of connections opened at once
+     * @param timeout ms
+     */
+    public void connectAll(Collection<Client> clients, int threads, long timeout) {
+        if (clients.isEmpty()) return;
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        ExecutorService exec = Executors.newFixedThreadPool(Math.min(threads, clients.size()));
+        try {
+            Map<Client, Future<?>> futures = new LinkedHashMap<>();
+            for (final Client client : clients) {
+                futures.put(client, exec.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        client.connect();
+                        return null;
+                    }
+                }));
+            }
+            int connected = 0;
+            for (Map.Entry<Client, Future<?>> future : futures.entrySet()) {
+                try {
+                    future.getValue().get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    connected++;
+                } catch (ExecutionException e) {
+                    logger.warn("Can not connect to {}: {}", future.getKey().getDeviceName(), e.getCause().getMessage());
+                } catch (TimeoutException e) {
+                    future.getValue().cancel(true);
+                    logger.warn("Connection to {} has timed out", future.getKey().getDeviceName());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.getValue().cancel(true);
+                }
+            }
+            logger.info("Connected to {} of {} devices in {} ms", connected, clients.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    /**
+     * @return clients registered so far
+     */
+    public Collection<Client> getClients() {
+        return clients.values();
+    }
+
+    /**
+     * Releases connections of the clients that have not been used for idle timeout
+     *
+     * @return number of released clients
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int result = 0;
+        for (Client client : clients.values()) {
+            if (now - client.getLastUsed() < TimeUnit.MILLISECONDS.toNanos(idleTimeout)) continue;
+            if (!client.disconnect()) continue;
+            logger.debug("Released idle connection to {}", client.getDeviceName());
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Stops eviction and releases connections of all clients, subscriptions must have been cancelled before
+     */
+    public synchronized void close() {
+        if (eviction != null) eviction.shutdownNow();
+        blockingRequests.shutdownNow();
+        for (Client client : clients.values()) {
+            if (!client.disconnect()) logger.warn("Connection to {} is still in use", client.getDeviceName());
+        }
+        clients.clear();
+    }
+
+    private synchronized void startEviction() {
+        if (eviction != null) return;
+        eviction = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("client-eviction"));
+        long period = Math.max(1000L, idleTimeout / 2);
+        eviction.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictIdle();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to evict idle clients", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Scheme and host are case insensitive, so are Tango device names. Trailing slashes are dropped, the fragment is
+     * kept as it names TINE devices, e.g. tine:/PETRA/Globals/#keyword
+     */
+    static String normalize(String deviceUrl) {
+        URI uri = URI.create(deviceUrl.trim()).normalize();
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        String authority = uri.getRawAuthority() == null ? null : uri.getRawAuthority().toLowerCase(Locale.ROOT);
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        if ("tango".equals(scheme)) path = path.toLowerCase(Locale.ROOT);
+        while (path.length() > 1 && path.endsWith("/")) path = path.substring(0, path.length() - 1);
+        return (scheme == null ? "" : scheme + ":") + (authority == null ? "" : "//" + authority) + path
+                + (uri.getRawFragment() == null ? "" : "#" + uri.getRawFragment());
+    }
+
+    /**
+     * For Tango the host of the url is Tango host, i.e. clients of the same control system share the limit.
+     * TINE urls have no host, context/server is used instead
+     */
+    static String getHost(String normalizedUrl) {
+        URI uri = URI.create(normalizedUrl);
+        if (uri.getRawAuthority() != null) return uri.getScheme() + "://" + uri.getRawAuthority();
+        String[] path = uri.getRawPath().split("/");
+        return uri.getScheme() + ":/" + (path.length > 1 ? path[1] : "") + "/" + (path.length > 2 ? path[2] : "");
+    }
 }
@@ -0,0 +1,101 @@
+package wpn.hdri.ss.client;
+
+import wpn.hdri.ss.data2.Attribute;
+import wpn.hdri.ss.engine2.EventTask;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Consumers of a single event subscription to a device server.
+ * <p/>
+ * Consumers are kept in a copy-on-write array, so delivering an event never locks. Once the last consumer has been
+ * removed the subscription is closed and can not be reused, {@link #add(EventTask)} returns false and the caller
+ * must wait until it has been released, see {@link #awaitReleased()}, and open a new one.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+class Subscription {
+    private static final EventTask[] EMPTY = new EventTask[0];
+
+    /**
+     * null once closed
+     */
+    private final AtomicReference<EventTask[]> consumers = new AtomicReference<>(EMPTY);
+    /**
+     * completed once the device subscription has been closed and this one is no longer registered
+     */
+    private final CompletableFuture<Void> released = new CompletableFuture<>();
+
+    /**
+     * @return false if this subscription has been closed
+     */
+    boolean add(EventTask consumer) {
+        while (true) {
+            EventTask[] current = consumers.get();
+            if (current == null) return false;
+            EventTask[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = consumer;
+            if (consumers.compareAndSet(current, updated)) return true;
+        }
+    }
+
+    /**
+     * Removes consumers of the attribute, closes this subscription if none are left
+     *
+     * @return true if this call has closed the subscription
+     */
+    boolean remove(Attribute<?> attr) {
+        while (true) {
+            EventTask[] current = consumers.get();
+            if (current == null) return false;
+            EventTask[] updated = new EventTask[current.length];
+            int size = 0;
+            for (EventTask consumer : current) {
+                if (consumer.getAttribute() != attr) updated[size++] = consumer;
+            }
+            if (size == current.length) return false;
+            if (consumers.compareAndSet(current, size == 0 ? null : Arrays.copyOf(updated, size))) return size == 0;
+        }
+    }
+
+    /**
+     * Closes this subscription regardless of its consumers, e.g. when the device subscription has failed
+     *
+     * @return consumers this subscription had before it was closed
+     */
+    EventTask[] close() {
+        EventTask[] result = consumers.getAndSet(null);
+        return result == null ? EMPTY : result;
+    }
+
+    /**
+     * Called by whoever has closed this subscription once it has been unregistered
+     */
+    void release() {
+        released.complete(null);
+    }
+
+    /**
+     * Blocks until this subscription has been closed and released
+     */
+    void awaitReleased() {
+        released.join();
+    }
+
+    boolean isClosed() {
+        return consumers.get() == null;
+    }
+
+    /**
+     * @return current consumers, must not be modified
+     */
+    EventTask[] getConsumers() {
+        EventTask[] result = consumers.get();
+        return result == null ? EMPTY : result;
+    }
+}
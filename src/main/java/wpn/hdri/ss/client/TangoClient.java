@@ -29,8 +29,15 @@
 
 package wpn.hdri.ss.client;
 
+import fr.esrf.Tango.AttrDataFormat;
 import fr.esrf.Tango.DevFailed;
+import fr.esrf.TangoApi.ApiDefs;
+import fr.esrf.TangoApi.ApiUtil;
+import fr.esrf.TangoApi.CallBack;
+import fr.esrf.TangoApi.DeviceAttribute;
 import fr.esrf.TangoApi.DeviceProxy;
+import fr.esrf.TangoApi.events.AttrReadEvent;
+import fr.esrf.TangoDs.TangoConst;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tango.client.ez.proxy.*;
@@ -38,14 +45,17 @@ import org.tango.client.ez.util.TangoUtils;
 import org.tango.utils.DevFailedUtils;
 import wpn.hdri.ss.client2.ClientAdaptor;
 import wpn.hdri.ss.data.Method;
-import wpn.hdri.ss.data2.Attribute;
-import wpn.hdri.ss.data2.SingleRecord;
+import wpn.hdri.ss.data2.*;
 import wpn.hdri.ss.engine2.EventTask;
 
+import java.lang.reflect.Array;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -61,8 +71,16 @@ public class TangoClient extends Client implements ClientAdaptor {
         TANGO_EVENT_TYPES.put(Method.EventType.PERIODIC, TangoEvent.PERIODIC);
     }
 
+    /**
+     * Whether JTango delivers asynchronous replies by its own thread, see {@link #readAsync(Attribute)}
+     */
+    private static volatile boolean pushCallbacks;
+
     private AtomicReference<TangoProxy> proxy = new AtomicReference<>(null);
-    private Map<String, TangoEventListener<?>> listeners = new HashMap<>();
+    /**
+     * attribute name/event type -> consumers of that device subscription
+     */
+    private final ConcurrentMap<String, Subscription> subscriptions = new ConcurrentHashMap<>();
 
     public TangoClient(URI deviceName) {
         super(deviceName.toString());
@@ -72,84 +90,391 @@ public class TangoClient extends Client implements ClientAdaptor {
         return TANGO_EVENT_TYPES;
     }
 
+    /**
+     * Proxy is created once and is shared by all requests until {@link #disconnect()}
+     */
+    private TangoProxy getProxy() throws TangoProxyException, DevFailed {
+        TangoProxy result;
+        while ((result = proxy.get()) == null) {
+            TangoProxy created = TangoProxies.newDeviceProxyWrapper(new DeviceProxy(getDeviceName()));
+            if (proxy.compareAndSet(null, created)) return created;
+        }
+        return result;
+    }
+
+    @Override
+    public void connect() throws ClientException {
+        acquire();
+        try {
+            getProxy();
+        } catch (TangoProxyException e) {
+            throw new ClientException("Can not connect to " + getDeviceName(), e);
+        } catch (DevFailed devFailed) {
+            throw new ClientException("Can not connect to " + getDeviceName(),
+                    TangoUtils.convertDevFailedToException(devFailed));
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * JTango closes the connection when the proxy is collected
+     */
+    @Override
+    public boolean disconnect() {
+        if (!subscriptions.isEmpty()) return false;
+        return proxy.getAndSet(null) != null;
+    }
+
     @Override
     public Class<?> getAttributeClass(String attrName) throws ClientException {
+        acquire();
         try {
-            this.proxy.compareAndSet(null,
-                    TangoProxies.newDeviceProxyWrapper(new DeviceProxy(getDeviceName())));
+            TangoProxy proxy = getProxy();
 
-            TangoAttributeInfoWrapper attributeInfo = proxy.get().getAttributeInfo(attrName);
+            TangoAttributeInfoWrapper attributeInfo = proxy.getAttributeInfo(attrName);
             if (attributeInfo == null)
-                throw new ClientException("Exception in " + proxy.get().getName(), new NullPointerException("attributeInfo is null"));
+                throw new ClientException("Exception in " + proxy.getName(), new NullPointerException("attributeInfo is null"));
+            if (attributeInfo.getFormat() != AttrDataFormat.SCALAR) return toArrayClass(attributeInfo.getClazz());
             return attributeInfo.getClazz();
         } catch (TangoProxyException | NoSuchAttributeException e) {
-            throw new ClientException("Exception in " + proxy.get().getName(), e);
+            throw new ClientException("Exception in " + getDeviceName(), e);
         } catch (DevFailed devFailed) {
             throw new ClientException("DevFailed when tried to read attribute",
                     TangoUtils.convertDevFailedToException(devFailed));
+        } finally {
+            release();
         }
     }
 
+    /**
+     * Spectra and images are read as flat primitive arrays, see {@link #toArrayRecord(Attribute, long, DeviceAttribute)}
+     *
+     * @return 1D array of the primitive element type or clazz if elements are not primitive
+     */
+    private static Class<?> toArrayClass(Class<?> clazz) {
+        Class<?> component = clazz;
+        while (component.isArray()) component = component.getComponentType();
+        if (!component.isPrimitive()) return clazz;
+        return Array.newInstance(component, 0).getClass();
+    }
+
     @Override
     public <T> SingleRecord<T> read(Attribute<T> attr) throws ClientException {
+        acquire();
         try {
-            this.proxy.compareAndSet(null,
-                    TangoProxies.newDeviceProxyWrapper(new DeviceProxy(getDeviceName())));
+            TangoProxy proxy = getProxy();
 
+            if (attr.recordType != RecordType.OBJECT)
+                return (SingleRecord<T>) readPrimitive(proxy, attr);
 
-            ValueTime<?> value = proxy.get().readAttributeValueAndTime(attr.name);
-            return new SingleRecord<>(attr, System.currentTimeMillis(), value.getTime(), (T)value.getValue());
+            ValueTime<?> value = proxy.readAttributeValueAndTime(attr.name);
+            return new SingleRecord<>(attr, Clock.currentTimeNanos(), value.getTime(), (T)value.getValue());
         } catch (TangoProxyException|NoSuchAttributeException e) {
             throw new ClientException(e.getMessage(),e);
         } catch (DevFailed devFailed) {
             throw new ClientException("DevFailed when tried to read attribute",
                     TangoUtils.convertDevFailedToException(devFailed));
+        } finally {
+            release();
         }
     }
 
+    /**
+     * Numeric scalar and array attributes are read by read_attribute_asynch and the future is completed by JTango callback
+     * thread, such requests do not count against the device limit. Other attributes need ez data conversion and are
+     * read by {@link #read(Attribute)} on the bounded pool of blocking requests, see {@link #getBlockingRequests()}.
+     * So is the proxy created if there is none yet, e.g. after the connection has been released as idle.
+     * <p/>
+     * Replies are delivered only if {@link #enablePushCallbacks()} has been called before
+     */
+    @Override
+    public <T> CompletableFuture<SingleRecord<T>> readAsync(final Attribute<T> attr) {
+        if (attr.recordType == RecordType.OBJECT)
+            return callBlocking(() -> read(attr));
+
+        final TangoProxy proxy = this.proxy.get();
+        if (proxy == null)
+            return callBlocking(() -> {
+                connect();
+                return null;
+            }).thenCompose(ignored -> readAsync(attr));
+
+        final CompletableFuture<SingleRecord<T>> result = new CompletableFuture<>();
+        touch();
+        try {
+            proxy.toDeviceProxy().read_attribute_asynch(new String[]{attr.name}, new CallBack() {
+                @Override
+                public void attr_read(AttrReadEvent event) {
+                    try {
+                        if (event.err) throw new DevFailed(event.errors);
+                        result.complete((SingleRecord<T>) toPrimitiveRecord(attr, Clock.currentTimeNanos(), event.argout[0]));
+                    } catch (DevFailed devFailed) {
+                        result.completeExceptionally(new ClientException("DevFailed when tried to read attribute",
+                                TangoUtils.convertDevFailedToException(devFailed)));
+                    } catch (Throwable e) {
+                        //thrown on the callback thread it would be lost and the read would never complete
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (DevFailed devFailed) {
+            result.completeExceptionally(new ClientException("DevFailed when tried to read attribute",
+                    TangoUtils.convertDevFailedToException(devFailed)));
+        }
+        return result;
+    }
+
+    /**
+     * By default JTango delivers replies only when a client asks for them, this switches it to push model for the
+     * whole process. Called once on start up of an asynchronous engine, see {@link #readAsync(Attribute)}
+     */
+    public static void enablePushCallbacks() {
+        if (pushCallbacks) return;
+        synchronized (TangoClient.class) {
+            if (pushCallbacks) return;
+            ApiUtil.set_asynch_cb_sub_model(ApiDefs.PUSH_CALLBACK);
+            pushCallbacks = true;
+        }
+    }
+
+    /**
+     * Numeric scalar and array attributes are read with a single read_attributes call, others one by one
+     */
+    @Override
+    public List<SingleRecord<?>> readAll(List<Attribute<?>> attrs) throws ClientException {
+        List<String> names = new ArrayList<>(attrs.size());
+        for (Attribute<?> attr : attrs) {
+            if (attr.recordType != RecordType.OBJECT) names.add(attr.name);
+        }
+
+        DeviceAttribute[] values = new DeviceAttribute[0];
+        long r_t = 0L;
+        if (!names.isEmpty()) {
+            acquire();
+            try {
+                values = getProxy().toDeviceProxy().read_attribute(names.toArray(new String[names.size()]));
+                r_t = Clock.currentTimeNanos();
+            } catch (TangoProxyException e) {
+                throw new ClientException(e.getMessage(), e);
+            } catch (DevFailed devFailed) {
+                throw new ClientException("DevFailed when tried to read attributes",
+                        TangoUtils.convertDevFailedToException(devFailed));
+            } finally {
+                release();
+            }
+        }
+
+        List<SingleRecord<?>> result = new ArrayList<>(attrs.size());
+        int ndx = 0;
+        for (Attribute<?> attr : attrs) {
+            try {
+                if (attr.recordType != RecordType.OBJECT)
+                    result.add(toPrimitiveRecord(attr, r_t, values[ndx++]));
+                else
+                    result.add(read(attr));
+            } catch (DevFailed devFailed) {
+                logger.error("Failed to read {}/{}: {}", getDeviceName(), attr.name,
+                        TangoUtils.convertDevFailedToException(devFailed).getMessage());
+                result.add(null);
+            } catch (ClientException e) {
+                logger.error(e.getMessage());
+                result.add(null);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads numeric scalar or array attribute bypassing ez data conversion, so that the value is never boxed
+     */
+    private SingleRecord<?> readPrimitive(TangoProxy proxy, Attribute<?> attr) throws DevFailed, ClientException {
+        DeviceAttribute result = proxy.toDeviceProxy().read_attribute(attr.name);
+        return toPrimitiveRecord(attr, Clock.currentTimeNanos(), result);
+    }
+
+    private SingleRecord<?> toPrimitiveRecord(Attribute<?> attr, long r_t, DeviceAttribute result) throws DevFailed, ClientException {
+        long w_t = result.getTimeValMillisSec();
+        switch (attr.recordType) {
+            case DOUBLE:
+                return new DoubleRecord((Attribute<Double>) attr, r_t, w_t, extractDouble(attr, result));
+            case LONG:
+                return new LongRecord((Attribute<Long>) attr, r_t, w_t, extractInteger(attr, result));
+            case INT:
+                //attribute type fits into int, see RecordType#forClass
+                return new IntRecord((Attribute<Integer>) attr, r_t, w_t, (int) extractInteger(attr, result));
+            case ARRAY:
+                return toArrayRecord(attr, r_t, result);
+            default:
+                throw new AssertionError("Unexpected record type: " + attr.recordType);
+        }
+    }
+
+    private static double extractDouble(Attribute<?> attr, DeviceAttribute result) throws DevFailed, ClientException {
+        switch (result.getType()) {
+            case TangoConst.Tango_DEV_DOUBLE:
+                return result.extractDouble();
+            case TangoConst.Tango_DEV_FLOAT:
+                return result.extractFloat();
+            default:
+                throw new ClientException("Unexpected type of " + attr.fullName + ": " + result.getType(), null);
+        }
+    }
+
+    /**
+     * Unsigned values are widened, except for ULONG64 which keeps its bits
+     */
+    private static long extractInteger(Attribute<?> attr, DeviceAttribute result) throws DevFailed, ClientException {
+        switch (result.getType()) {
+            case TangoConst.Tango_DEV_LONG64:
+                return result.extractLong64();
+            case TangoConst.Tango_DEV_ULONG64:
+                return result.extractULong64();
+            case TangoConst.Tango_DEV_LONG:
+                return result.extractLong();
+            case TangoConst.Tango_DEV_ULONG:
+                return result.extractULong();
+            case TangoConst.Tango_DEV_SHORT:
+                return result.extractShort();
+            case TangoConst.Tango_DEV_USHORT:
+                return result.extractUShort();
+            default:
+                throw new ClientException("Unexpected type of " + attr.fullName + ": " + result.getType(), null);
+        }
+    }
+
+    /**
+     * Images come row by row in a flat array
+     */
+    private SingleRecord<?> toArrayRecord(Attribute<?> attr, long r_t, DeviceAttribute result) throws DevFailed, ClientException {
+        long w_t = result.getTimeValMillisSec();
+        Object value;
+        switch (result.getType()) {
+            case TangoConst.Tango_DEV_DOUBLE:
+                value = result.extractDoubleArray();
+                break;
+            case TangoConst.Tango_DEV_FLOAT:
+                value = result.extractFloatArray();
+                break;
+            case TangoConst.Tango_DEV_LONG64:
+                value = result.extractLong64Array();
+                break;
+            case TangoConst.Tango_DEV_ULONG64:
+                value = result.extractULong64Array();
+                break;
+            case TangoConst.Tango_DEV_LONG:
+                value = result.extractLongArray();
+                break;
+            case TangoConst.Tango_DEV_ULONG:
+                value = result.extractULongArray();
+                break;
+            case TangoConst.Tango_DEV_SHORT:
+                value = result.extractShortArray();
+                break;
+            case TangoConst.Tango_DEV_USHORT:
+                value = result.extractUShortArray();
+                break;
+            case TangoConst.Tango_DEV_UCHAR:
+                value = result.extractUCharArray();
+                break;
+            default:
+                throw new ClientException("Unexpected type of " + attr.fullName + ": " + result.getType(), null);
+        }
+        int dimY = result.getDataFormat() == AttrDataFormat.IMAGE ? result.getDimY() : 0;
+        return new ArrayRecord((Attribute<Object>) attr, r_t, w_t, value, result.getDimX(), dimY);
+    }
+
+    /**
+     * Consumers of the same attribute and event type share a single device subscription, the first consumer opens
+     * it and the last one closes it. Each consumer gets its own record of the event
+     */
     @Override
     public void subscribe(final EventTask cbk) {
-        final Attribute attr = cbk.getAttribute();
+        Attribute<?> attr = cbk.getAttribute();
+        String key = key(attr);
+        touch();
+        while (true) {
+            Subscription subscription = subscriptions.get(key);
+            if (subscription == null) {
+                Subscription created = new Subscription();
+                created.add(cbk);
+                if (subscriptions.putIfAbsent(key, created) == null) {
+                    open(cbk, key, created);
+                    return;
+                }
+            } else if (subscription.add(cbk)) {
+                return;
+            } else {
+                //closing, wait until it has been unsubscribed from the device
+                subscription.awaitReleased();
+            }
+        }
+    }
+
+    /**
+     * If the device subscription fails, consumers that have joined it meanwhile subscribe again on their own
+     */
+    private void open(EventTask cbk, String key, final Subscription subscription) {
+        Attribute<?> attr = cbk.getAttribute();
+        TangoEvent event = (TangoEvent) eventTypesMap.get(attr.eventType);
         try {
-            this.proxy.compareAndSet(null,
-                    TangoProxies.newDeviceProxyWrapper(new DeviceProxy(getDeviceName())));
+            TangoProxy proxy = getProxy();
 
-            proxy.get().subscribeToEvent(attr.name, (TangoEvent) eventTypesMap.get(attr.eventType));
-            TangoEventListener<Object> listener = new TangoEventListener<Object>() {
+            proxy.subscribeToEvent(attr.name, event);
+            proxy.addEventListener(attr.name, event, new TangoEventListener<Object>() {
                 @Override
                 public void onEvent(org.tango.client.ez.proxy.EventData<Object> data) {
-                    SingleRecord<?> record = new SingleRecord<>(attr, System.currentTimeMillis(), data.getTime(), data.getValue());
-                    cbk.onEvent(record);
+                    long r_t = Clock.currentTimeNanos();
+                    for (EventTask consumer : subscription.getConsumers()) {
+                        Attribute<?> target = consumer.getAttribute();
+                        try {
+                            consumer.onEvent(target.recordType.newRecord(target, r_t, data.getTime(), data.getValue()));
+                        } catch (RuntimeException e) {
+                            logger.error("Failed to pass event to consumer of {}", target.fullName, e);
+                        }
+                    }
                 }
 
                 @Override
                 public void onError(Exception cause) {
                     logger.error(cause.getMessage(), cause);
                 }
-            };
-            proxy.get().addEventListener(attr.name, (TangoEvent) eventTypesMap.get(attr.eventType), listener);
-
-            listeners.put(attr.name, listener);
+            });
+            return;
         } catch (TangoProxyException | NoSuchAttributeException devFailed) {
             logger.error(devFailed.toString());
         } catch (DevFailed devFailed) {
             DevFailedUtils.logDevFailed(devFailed, logger);
         }
+        EventTask[] consumers = subscription.close();
+        subscriptions.remove(key, subscription);
+        subscription.release();
+        for (EventTask consumer : consumers) {
+            if (consumer != cbk) subscribe(consumer);
+        }
     }
 
+    /**
+     * Removes consumers of this attribute, the device subscription is closed when no consumers are left
+     */
     @Override
     public void unsubscribe(Attribute attr) {
-        listeners.remove(attr.name);
+        String key = key(attr);
+        Subscription subscription = subscriptions.get(key);
+        if (subscription == null || !subscription.remove(attr)) return;
         try {
-            this.proxy.compareAndSet(null,
-                    TangoProxies.newDeviceProxyWrapper(new DeviceProxy(getDeviceName())));
-
-            proxy.get().unsubscribeFromEvent(attr.name, (TangoEvent) eventTypesMap.get(attr.eventType));
+            getProxy().unsubscribeFromEvent(attr.name, (TangoEvent) eventTypesMap.get(attr.eventType));
         } catch (TangoProxyException devFailed) {
             logger.error(devFailed.toString());
         } catch (DevFailed devFailed) {
             DevFailedUtils.logDevFailed(devFailed, logger);
+        } finally {
+            subscriptions.remove(key, subscription);
+            subscription.release();
         }
+    }
 
+    private static String key(Attribute<?> attr) {
+        return attr.name + "/" + attr.eventType;
     }
 }
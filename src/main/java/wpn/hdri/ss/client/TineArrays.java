@@ -0,0 +1,78 @@
+package wpn.hdri.ss.client;
+
+import de.desy.tine.dataUtils.TDataType;
+
+import java.lang.reflect.Array;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Turns the output buffer of a TINE link into a record value.
+ * <p/>
+ * The buffer belongs to the link and is overwritten by the next transfer, so the value is copied. A value that has
+ * not changed since the previous record is not copied, the previous array is returned instead. Arrays referenced by
+ * records are therefore shared and must never be modified.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+class TineArrays {
+    private TineArrays() {
+    }
+
+    /**
+     * @param size property size as returned by the property query
+     * @param format property format
+     * @return component type for scalars, String for text, the primitive array type for spectra
+     */
+    static Class<?> getValueClass(int size, short format) {
+        Class<?> component = new TDataType(size, format).getDataObject().getClass().getComponentType();
+        if (component == char.class) return String.class;
+        if (size > 1 && component.isPrimitive()) return Array.newInstance(component, 0).getClass();
+        return component;
+    }
+
+    /**
+     * @param type as returned by {@link #getValueClass(int, short)}
+     * @param previous value of the previous record of the attribute, may be null
+     */
+    static Object getValue(Class<?> type, TDataType dout, Object previous) {
+        Object buffer = dout.getDataObject();
+        int length = Array.getLength(buffer);
+        int transferred = dout.getArrayLength();
+        if (transferred > 0 && transferred < length) length = transferred;
+
+        if (buffer instanceof char[]) {
+            char[] chars = (char[]) buffer;
+            int end = 0;
+            while (end < length && chars[end] != 0) ++end;
+            return previous instanceof String && ((String) previous).contentEquals(CharBuffer.wrap(chars, 0, end))
+                    ? previous : new String(chars, 0, end);
+        }
+        if (type == null || !type.isArray()) return Array.get(buffer, 0);
+
+        if (previous != null && previous.getClass() == buffer.getClass() && Array.getLength(previous) == length
+                && rangeEquals(buffer, previous, length)) return previous;
+        Object result = Array.newInstance(buffer.getClass().getComponentType(), length);
+        System.arraycopy(buffer, 0, result, 0, length);
+        return result;
+    }
+
+    private static boolean rangeEquals(Object buffer, Object value, int length) {
+        if (buffer instanceof double[])
+            return Arrays.equals((double[]) buffer, 0, length, (double[]) value, 0, length);
+        if (buffer instanceof float[])
+            return Arrays.equals((float[]) buffer, 0, length, (float[]) value, 0, length);
+        if (buffer instanceof long[])
+            return Arrays.equals((long[]) buffer, 0, length, (long[]) value, 0, length);
+        if (buffer instanceof int[])
+            return Arrays.equals((int[]) buffer, 0, length, (int[]) value, 0, length);
+        if (buffer instanceof short[])
+            return Arrays.equals((short[]) buffer, 0, length, (short[]) value, 0, length);
+        if (buffer instanceof byte[])
+            return Arrays.equals((byte[]) buffer, 0, length, (byte[]) value, 0, length);
+        if (buffer instanceof boolean[])
+            return Arrays.equals((boolean[]) buffer, 0, length, (boolean[]) value, 0, length);
+        return false;
+    }
+}
@@ -41,13 +41,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import wpn.hdri.ss.client2.ClientAdaptor;
 import wpn.hdri.ss.data.Method;
-import wpn.hdri.ss.data2.Attribute;
-import wpn.hdri.ss.data2.SingleRecord;
+import wpn.hdri.ss.data2.*;
 import wpn.hdri.ss.engine2.EventTask;
 
 import java.lang.reflect.Array;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.*;
 
@@ -70,6 +74,18 @@ public class TineClient extends Client implements ClientAdaptor {
     final String serverName;
     final String deviceName;
     private ConcurrentMap<String, Future<TLink>> tlinks = new ConcurrentHashMap<String, Future<TLink>>();
+    /**
+     * Links used by {@link #readAsync(Attribute)} only, so that attached event callbacks are not replaced
+     */
+    private ConcurrentMap<String, Future<TLink>> asyncLinks = new ConcurrentHashMap<String, Future<TLink>>();
+    /**
+     * Names of the attributes whose links carry event callbacks
+     */
+    private Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    /**
+     * Last non numeric value of each attribute, unchanged arrays are shared with it
+     */
+    private ConcurrentMap<String, Object> lastValues = new ConcurrentHashMap<>();
 
     public TineClient(URI deviceName) {
         super(deviceName.toString());
@@ -94,6 +110,10 @@ public class TineClient extends Client implements ClientAdaptor {
     }
 
     private Future<TLink> getFutureLink(final String attrName) {
+        return getFutureLink(tlinks, attrName);
+    }
+
+    private Future<TLink> getFutureLink(ConcurrentMap<String, Future<TLink>> tlinks, final String attrName) {
         Future<TLink> futureLink = tlinks.get(attrName);
         if (futureLink == null) {
             FutureTask<TLink> ft =
@@ -122,19 +142,24 @@ public class TineClient extends Client implements ClientAdaptor {
     }
 
     /**
-     * @param dout
-     * @return Object or Object[]
+     * Creates a record from the first element of the TINE array, or from the whole array for spectra. Numeric values
+     * are never boxed, see {@link TineArrays} for arrays.
      */
-    private Object getDataObject(TDataType dout) {
-        int length = Array.getLength(dout.getDataObject());
+    private SingleRecord<?> newRecord(Attribute<?> attr, long time, TDataType dout) {
         Object dataObject = dout.getDataObject();
-        //TODO it appears that TINE always returns array of values
-        //TODO and the only interesting value is always the first one in this array
-        //if (length > 1) {
-        //    return dataObject;
-        //} else {
-        return Array.get(dataObject, 0);
-        //}
+        long r_t = Clock.currentTimeNanos();
+        switch (attr.recordType) {
+            case DOUBLE:
+                return new DoubleRecord((Attribute<Double>) attr, r_t, time, Array.getDouble(dataObject, 0));
+            case LONG:
+                return new LongRecord((Attribute<Long>) attr, r_t, time, Array.getLong(dataObject, 0));
+            case INT:
+                return new IntRecord((Attribute<Integer>) attr, r_t, time, Array.getInt(dataObject, 0));
+            default:
+                Object value = TineArrays.getValue(attr.type, dout, lastValues.get(attr.name));
+                lastValues.put(attr.name, value);
+                return attr.recordType.newRecord(attr, r_t, time, value);
+        }
     }
 
     private int getTPropertySize(TPropertyQuery meta) {
@@ -147,19 +172,43 @@ public class TineClient extends Client implements ClientAdaptor {
         return result;
     }
 
+    /**
+     * TINE links are opened per attribute on the first request, there is nothing to open ahead
+     */
+    @Override
+    public void connect() {
+    }
+
+    /**
+     * Closes the links that do not carry event callbacks
+     */
+    @Override
+    public boolean disconnect() {
+        boolean result = false;
+        for (ConcurrentMap<String, Future<TLink>> links : Arrays.asList(tlinks, asyncLinks)) {
+            for (Map.Entry<String, Future<TLink>> entry : links.entrySet()) {
+                if (links == tlinks && subscribed.contains(entry.getKey())) continue;
+                if (!links.remove(entry.getKey(), entry.getValue())) continue;
+                try {
+                    entry.getValue().get().close();
+                    result = true;
+                } catch (InterruptedException | ExecutionException e) {
+                    LOGGER.debug("Link {}/{} has not been opened: {}", getDeviceName(), entry.getKey(), e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public Class<?> getAttributeClass(String attrName) throws ClientException {
-        TPropertyQuery meta = getTPropertyQuery(attrName);
-        int size = getTPropertySize(meta);
-        short dataFormat = getTPropertyFormat(meta);
-        TDataType dataType = new TDataType(size, dataFormat);
-        //TODO it appears that TINE always returns array of values
-        //TODO and the only interesting value is always the first one in this array
-        //if (size > 1) {
-//            return dataType.getDataObject().getClass();
-        //      } else {
-        return dataType.getDataObject().getClass().getComponentType();
-        //    }
+        acquire();
+        try {
+            TPropertyQuery meta = getTPropertyQuery(attrName);
+            return TineArrays.getValueClass(getTPropertySize(meta), getTPropertyFormat(meta));
+        } finally {
+            release();
+        }
     }
 
     private TPropertyQuery getTPropertyQuery(String attrName) throws ClientException {
@@ -173,6 +222,7 @@ public class TineClient extends Client implements ClientAdaptor {
     @Override
     public <T> SingleRecord<T> read(Attribute<T> attr) throws ClientException {
         Future<TLink> futureLink = getFutureLink(attr.name);
+        acquire();
         try {
             TLink tLink = futureLink.get();
             int rc = tLink.execute();
@@ -181,15 +231,68 @@ public class TineClient extends Client implements ClientAdaptor {
             }
             TDataType dout = tLink.dOutput;
             long time = tLink.getLastTimeStamp();
-            return new SingleRecord<T>(attr, System.currentTimeMillis(), time, (T)getDataObject(dout));
+            return (SingleRecord<T>) newRecord(attr, time, dout);
         } catch (Exception e) {
             throw new ClientException("Read from " + getDeviceName() + "/" + attr.name + " has failed:" + e.getMessage(), e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Executes a dedicated link of the attribute in single shot mode, the future is completed by TINE callback thread.
+     * Reads of the same attribute must not overlap as the link has a single output buffer
+     */
+    @Override
+    public <T> CompletableFuture<SingleRecord<T>> readAsync(final Attribute<T> attr) {
+        final CompletableFuture<SingleRecord<T>> result = new CompletableFuture<>();
+        touch();
+        final TLink link;
+        try {
+            link = getFutureLink(asyncLinks, attr.name).get();
+        } catch (InterruptedException | ExecutionException e) {
+            result.completeExceptionally(new ClientException("Read from " + getDeviceName() + "/" + attr.name + " has failed:" + e.getMessage(), e));
+            return result;
         }
+        int rc = link.attach(TMode.CM_SINGLE, new TCallback() {
+            @Override
+            public void callback(int LinkIndex, int LinkStatus) {
+                if (TErrorList.isLinkSuccess(LinkStatus)) {
+                    result.complete((SingleRecord<T>) newRecord(attr, link.getLastTimeStamp(), link.dOutput));
+                } else {
+                    result.completeExceptionally(new ClientException("Read from " + getDeviceName() + "/" + attr.name +
+                            " has failed:" + TErrorList.getErrorString(LinkStatus), null));
+                }
+            }
+        });
+        if (rc < 0)
+            result.completeExceptionally(new ClientException("Read from " + getDeviceName() + "/" + attr.name +
+                    " has failed:" + link.getLastError(), null));
+        return result;
+    }
+
+    /**
+     * TINE links are synchronous, so links are executed one after another. They share the connection to the server
+     */
+    @Override
+    public List<SingleRecord<?>> readAll(List<Attribute<?>> attrs) throws ClientException {
+        List<SingleRecord<?>> result = new ArrayList<>(attrs.size());
+        for (Attribute<?> attr : attrs) {
+            try {
+                result.add(read(attr));
+            } catch (ClientException e) {
+                LOGGER.error(e.getMessage());
+                result.add(null);
+            }
+        }
+        return result;
     }
 
     @Override
     public void subscribe(final EventTask eventTask) {
         final Attribute attr = eventTask.getAttribute();
+        touch();
+        subscribed.add(attr.name);
         Future<TLink> futureLink = getFutureLink(attr.name);
         final TLink link;
         try {
@@ -200,7 +303,7 @@ public class TineClient extends Client implements ClientAdaptor {
         final TDataType dout = link.dOutput;
             long time = link.getLastTimeStamp();
             //read data for the first time
-            SingleRecord<?> record = new SingleRecord<>(attr,System.currentTimeMillis(),time,getDataObject(dout));
+            SingleRecord<?> record = newRecord(attr, time, dout);
             eventTask.onEvent(record);
             //attach event listener
             int rc = link.attach((Short) eventTypesMap.get(attr.eventType), new TCallback() {
@@ -208,7 +311,7 @@ public class TineClient extends Client implements ClientAdaptor {
                 public void callback(int LinkIndex, int LinkStatus) {
                     if (TErrorList.isLinkSuccess(LinkStatus)) {
                         long time = link.getLastTimeStamp();
-                        SingleRecord<?> record = new SingleRecord<>(attr,System.currentTimeMillis(),time,getDataObject(dout));
+                        SingleRecord<?> record = newRecord(attr, time, dout);
                         eventTask.onEvent(record);
                     } else {
                         LOGGER.error(TErrorList.getErrorString(LinkStatus));
@@ -222,6 +325,8 @@ public class TineClient extends Client implements ClientAdaptor {
 
     @Override
     public void unsubscribe(Attribute attr) {
+        subscribed.remove(attr.name);
+        lastValues.remove(attr.name);
         Future<TLink> futureLink = tlinks.remove(attr.name);
         if(futureLink == null) return;
         final TLink link;
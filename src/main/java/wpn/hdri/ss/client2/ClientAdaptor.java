@@ -6,6 +6,9 @@ import wpn.hdri.ss.data2.Attribute;
 import wpn.hdri.ss.data2.SingleRecord;
 import wpn.hdri.ss.engine2.EventTask;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 10.11.2015
@@ -13,6 +16,23 @@ import wpn.hdri.ss.engine2.EventTask;
 public interface ClientAdaptor {
     public <T> SingleRecord<T> read(Attribute<T> attr) throws ClientException;
 
+    /**
+     * Starts a read without blocking the caller, the future is completed by the client library's thread
+     *
+     * @param attr
+     * @return future record, fails with {@link ClientException}
+     */
+    public <T> CompletableFuture<SingleRecord<T>> readAsync(Attribute<T> attr);
+
+    /**
+     * Reads several attributes of this device, in a single request if the protocol allows it
+     *
+     * @param attrs
+     * @return records in the order of attrs, null for attributes that have failed
+     * @throws ClientException if the whole request has failed
+     */
+    public List<SingleRecord<?>> readAll(List<Attribute<?>> attrs) throws ClientException;
+
     /**
      * Fails silently
      *
@@ -58,6 +58,8 @@ public final class DeviceAttribute {
     private BigDecimal precision;
     @Attribute(name = "type", required = false)
     private String eventType;
+    @Attribute(name = "quota", required = false)
+    private long quota;
 
 
 //        if (method == Method.EVENT) {
@@ -146,6 +148,17 @@ public final class DeviceAttribute {
         this.eventType = eventType;
     }
 
+    /**
+     * @return how much memory records of this attribute may take in KB, 0 - no quota
+     */
+    public long getQuota() {
+        return quota;
+    }
+
+    public void setQuota(long quota) {
+        this.quota = quota;
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "@" + hashCode() + "{" +
@@ -154,6 +167,7 @@ public final class DeviceAttribute {
                 ";method=" + method +
                 ";interpolation=" + interpolation +
                 ";delay=" + delay +
+                ";quota=" + quota +
                 "}";
     }
 }
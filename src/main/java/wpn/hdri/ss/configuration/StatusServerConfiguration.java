@@ -69,8 +69,48 @@ public final class StatusServerConfiguration {
         }
     });
 
+    public static final String STORAGE_HEAP = "heap";
+    public static final String STORAGE_MMAP = "mmap";
+    public static final String METADATA_CACHE_OFF = "off";
+
     @Attribute(name = "use-aliases")
     private boolean useAliases;
+    @Attribute(name = "storage", required = false)
+    private String storage;
+    @Attribute(name = "storage-root", required = false)
+    private String storageRoot;
+    @Attribute(name = "retention", required = false)
+    private long retention;
+    @Attribute(name = "memory-budget", required = false)
+    private long memoryBudget;
+    @Attribute(name = "engine", required = false)
+    private String engine;
+    @Attribute(name = "adaptive-max-delay", required = false)
+    private long adaptiveMaxDelay;
+    @Attribute(name = "adaptive-idle-reads", required = false)
+    private int adaptiveIdleReads;
+    @Attribute(name = "overload-policy", required = false)
+    private String overloadPolicy;
+    @Attribute(name = "event-queue", required = false)
+    private int eventQueue;
+    @Attribute(name = "event-writers", required = false)
+    private int eventWriters;
+    @Attribute(name = "event-coalescing", required = false)
+    private Boolean eventCoalescing;
+    @Attribute(name = "discovery-threads", required = false)
+    private int discoveryThreads;
+    @Attribute(name = "discovery-timeout", required = false)
+    private long discoveryTimeout;
+    @Attribute(name = "metadata-cache", required = false)
+    private String metadataCache;
+    @Attribute(name = "max-requests-per-host", required = false)
+    private int maxRequestsPerHost;
+    @Attribute(name = "max-requests-per-device", required = false)
+    private int maxRequestsPerDevice;
+    @Attribute(name = "client-idle-timeout", required = false)
+    private long clientIdleTimeout;
+    @Attribute(name = "array-compression", required = false)
+    private boolean arrayCompression;
     @ElementList(name = "devices")
     private List<Device> devices;
     @ElementList(name = "attributes")
@@ -87,7 +127,50 @@ public final class StatusServerConfiguration {
             @Attribute(name = "use-aliases") boolean useAliases,
             @ElementList(name = "devices") List<Device> devices,
             @ElementList(name = "attributes") List<StatusServerAttribute> attributes) {
+        this(useAliases, null, null, 0L, 0L, null, 0L, 0, null, 0, 0, null, 0, 0L, null, 0, 0, 0L, false, devices, attributes);
+    }
+
+    public StatusServerConfiguration(
+            @Attribute(name = "use-aliases") boolean useAliases,
+            @Attribute(name = "storage", required = false) String storage,
+            @Attribute(name = "storage-root", required = false) String storageRoot,
+            @Attribute(name = "retention", required = false) long retention,
+            @Attribute(name = "memory-budget", required = false) long memoryBudget,
+            @Attribute(name = "engine", required = false) String engine,
+            @Attribute(name = "adaptive-max-delay", required = false) long adaptiveMaxDelay,
+            @Attribute(name = "adaptive-idle-reads", required = false) int adaptiveIdleReads,
+            @Attribute(name = "overload-policy", required = false) String overloadPolicy,
+            @Attribute(name = "event-queue", required = false) int eventQueue,
+            @Attribute(name = "event-writers", required = false) int eventWriters,
+            @Attribute(name = "event-coalescing", required = false) Boolean eventCoalescing,
+            @Attribute(name = "discovery-threads", required = false) int discoveryThreads,
+            @Attribute(name = "discovery-timeout", required = false) long discoveryTimeout,
+            @Attribute(name = "metadata-cache", required = false) String metadataCache,
+            @Attribute(name = "max-requests-per-host", required = false) int maxRequestsPerHost,
+            @Attribute(name = "max-requests-per-device", required = false) int maxRequestsPerDevice,
+            @Attribute(name = "client-idle-timeout", required = false) long clientIdleTimeout,
+            @Attribute(name = "array-compression", required = false) boolean arrayCompression,
+            @ElementList(name = "devices") List<Device> devices,
+            @ElementList(name = "attributes") List<StatusServerAttribute> attributes) {
         this.useAliases = useAliases;
+        this.storage = storage;
+        this.storageRoot = storageRoot;
+        this.retention = retention;
+        this.memoryBudget = memoryBudget;
+        this.engine = engine;
+        this.adaptiveMaxDelay = adaptiveMaxDelay;
+        this.adaptiveIdleReads = adaptiveIdleReads;
+        this.overloadPolicy = overloadPolicy;
+        this.eventQueue = eventQueue;
+        this.eventWriters = eventWriters;
+        this.eventCoalescing = eventCoalescing;
+        this.discoveryThreads = discoveryThreads;
+        this.discoveryTimeout = discoveryTimeout;
+        this.metadataCache = metadataCache;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.maxRequestsPerDevice = maxRequestsPerDevice;
+        this.clientIdleTimeout = clientIdleTimeout;
+        this.arrayCompression = arrayCompression;
         this.devices = devices;
         this.attributes = attributes;
     }
@@ -115,6 +198,132 @@ public final class StatusServerConfiguration {
         return useAliases;
     }
 
+    /**
+     * @return where collected records are kept := heap|mmap, heap by default
+     */
+    public String getStorage() {
+        return storage == null ? STORAGE_HEAP : storage;
+    }
+
+    /**
+     * @return root directory of mmap storage, java.io.tmpdir/StatusServer by default
+     */
+    public String getStorageRoot() {
+        return storageRoot == null ? System.getProperty("java.io.tmpdir") + File.separator + "StatusServer" : storageRoot;
+    }
+
+    /**
+     * @return how long collected records are kept in ms, 0 - default
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * @return how much memory collected records may take in MB, 0 - unlimited
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return which threads poll attributes := scheduled|virtual, scheduled by default
+     */
+    public String getEngine() {
+        return engine == null ? "scheduled" : engine;
+    }
+
+    /**
+     * @return upper bound of the polling delay in ms when nothing changes, 0 - adaptive polling is off
+     */
+    public long getAdaptiveMaxDelay() {
+        return adaptiveMaxDelay;
+    }
+
+    /**
+     * @return number of reads without a change after which polling slows down, 0 - default
+     */
+    public int getAdaptiveIdleReads() {
+        return adaptiveIdleReads;
+    }
+
+    /**
+     * @return what happens when a read takes longer than its delay := skip|stretch|events, skip by default
+     */
+    public String getOverloadPolicy() {
+        return overloadPolicy == null ? "skip" : overloadPolicy;
+    }
+
+    /**
+     * @return capacity of the event queue in records, 0 - default
+     */
+    public int getEventQueue() {
+        return eventQueue;
+    }
+
+    /**
+     * @return number of threads that write events, 1 by default
+     */
+    public int getEventWriters() {
+        return eventWriters > 0 ? eventWriters : 1;
+    }
+
+    /**
+     * @return whether events with duplicate write timestamp are skipped, true by default
+     */
+    public boolean isEventCoalescing() {
+        return eventCoalescing == null || eventCoalescing;
+    }
+
+    /**
+     * @return how many attribute types are queried at once on start up, 16 by default
+     */
+    public int getDiscoveryThreads() {
+        return discoveryThreads > 0 ? discoveryThreads : 16;
+    }
+
+    /**
+     * @return how long discovery of attribute types may take in ms, 60000 by default
+     */
+    public long getDiscoveryTimeout() {
+        return discoveryTimeout > 0 ? discoveryTimeout : 60000L;
+    }
+
+    /**
+     * @return path of the attribute types cache file, off - no cache, null - default location in storage root
+     */
+    public String getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * @return how many blocking requests may run against devices of a single host at once, 0 - unlimited
+     */
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * @return how many blocking requests may run against a single device at once, 0 - unlimited
+     */
+    public int getMaxRequestsPerDevice() {
+        return maxRequestsPerDevice;
+    }
+
+    /**
+     * @return ms after which connections of an unused client are released, 0 - never
+     */
+    public long getClientIdleTimeout() {
+        return clientIdleTimeout;
+    }
+
+    /**
+     * @return whether frames of spectra and images are stored as deltas of the previous frame
+     */
+    public boolean isArrayCompression() {
+        return arrayCompression;
+    }
+
     public List<Device> getDevices() {
         return devices;
     }
@@ -1,80 +1,142 @@
 package wpn.hdri.ss.data2;
 
 import javax.annotation.concurrent.ThreadSafe;
-import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class accumulates all the records collected so far.
  * <p/>
- * Backed with {@link java.util.concurrent.CopyOnWriteArrayList}.
+ * Each attribute has its own append-only {@link RecordsColumn}, ranges are merged by read timestamp.
+ * <p/>
+ * With {@link MappedStorage} primitive columns are kept off-heap and snapshots are rebuilt from the columns instead of
+ * being kept in {@link SnapshotHistory}, so the heap does not grow with the number of collected records.
+ * <p/>
+ * Records of spectra and images are kept only in their columns, see {@link ArrayChunk}. Once there is such a column
+ * snapshots are rebuilt from the columns as well.
  *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 09.11.2015
  */
 @ThreadSafe
 public class AllRecords {
-    private final int totalNumberOfAttributes;
+    private volatile int totalNumberOfAttributes;
 
     /**
-     * Aggregates all records collected so far
+     * Aggregates all records collected so far, column per attribute.id (ndx)
+     */
+    private volatile AtomicReferenceArray<RecordsColumn> columns;
+    /**
+     * Memory quota in bytes per attribute.id, 0 - no quota
+     */
+    private volatile AtomicLongArray quotas;
+    /**
+     * Keyframes and deltas of the snapshot for each record collected so far, null if records are mapped
      */
-    private final ConcurrentSkipListSet<SingleRecord<?>> data;
+    private final SnapshotHistory snapshots;
+    private final MappedStorage storage;
+    private final boolean compressArrays;
     /**
-     * Splits all records collected so far by attribute.id (ndx)
+     * Whether there is a column of {@link ArrayRecord}s, i.e. {@link #snapshots} are incomplete
      */
-    private final ConcurrentSkipListSet<TimedSnapshot> snapshots;
+    private volatile boolean arrays;
+
+    /**
+     * r_t of the last added record, used only to count collisions
+     */
+    private final AtomicLong lastReadTimestamp = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder collisions = new LongAdder();
 
     public AllRecords(int totalNumberOfAttributes) {
+        this(totalNumberOfAttributes, null);
+    }
+
+    /**
+     * @param storage off-heap storage or null to keep everything on the heap
+     */
+    public AllRecords(int totalNumberOfAttributes, MappedStorage storage) {
+        this(totalNumberOfAttributes, storage, false);
+    }
+
+    /**
+     * @param storage off-heap storage or null to keep everything on the heap
+     * @param compressArrays whether frames of spectra and images are stored as deltas of the previous frame
+     */
+    public AllRecords(int totalNumberOfAttributes, MappedStorage storage, boolean compressArrays) {
+        this.totalNumberOfAttributes = totalNumberOfAttributes;
+        this.storage = storage;
+        this.compressArrays = compressArrays;
+        columns = new AtomicReferenceArray<>(totalNumberOfAttributes);
+        quotas = new AtomicLongArray(totalNumberOfAttributes);
+        snapshots = storage == null ? new SnapshotHistory(totalNumberOfAttributes) : null;
+    }
+
+    /**
+     * Adds room for attributes added at runtime, collected records are kept.
+     * Must not run concurrently with {@link #add(SingleRecord)}, see {@link wpn.hdri.ss.engine2.DataStorage#grow(int)}
+     *
+     * @param totalNumberOfAttributes new number of attributes
+     */
+    public synchronized void grow(int totalNumberOfAttributes) {
+        if (totalNumberOfAttributes <= this.totalNumberOfAttributes) return;
+        AtomicReferenceArray<RecordsColumn> columns = new AtomicReferenceArray<>(totalNumberOfAttributes);
+        AtomicLongArray quotas = new AtomicLongArray(totalNumberOfAttributes);
+        for (int i = 0; i < this.totalNumberOfAttributes; ++i) {
+            columns.set(i, this.columns.get(i));
+            quotas.set(i, this.quotas.get(i));
+        }
+        if (snapshots != null) snapshots.grow(totalNumberOfAttributes);
+        this.columns = columns;
+        this.quotas = quotas;
         this.totalNumberOfAttributes = totalNumberOfAttributes;
-        data = new ConcurrentSkipListSet<>(new SingleRecordComparator());
-        snapshots = new ConcurrentSkipListSet<>(new SnapshotComparator());
     }
 
     public void add(SingleRecord record) {
-        TimedSnapshot last;
-        try {
-            last = snapshots.last();
+        if (!getColumn(record).append(record)) return;
 
-            if(last.get(record.id) != null && last.get(record.id).w_t == record.w_t) return;
+        if (lastReadTimestamp.getAndSet(record.r_t) == record.r_t) collisions.increment();
 
-            last = last.copy();
-        } catch (NoSuchElementException e) {
-            last = new TimedSnapshot(totalNumberOfAttributes);
-        }
+        if (record instanceof ArrayRecord) arrays = true;
+        else if (snapshots != null) snapshots.add(record);
+    }
 
-        last.update(record);
+    private RecordsColumn getColumn(SingleRecord<?> record) {
+        RecordsColumn column = columns.get(record.id);
+        if (column != null) return column;
+        columns.compareAndSet(record.id, null, new RecordsColumn(record.attribute, storage, compressArrays));
+        return columns.get(record.id);
+    }
 
-        snapshots.add(last);
-        data.add(record);
+    private List<RecordsColumn> getColumns() {
+        AtomicReferenceArray<RecordsColumn> columns = this.columns;
+        List<RecordsColumn> result = new ArrayList<>(columns.length());
+        for (int i = 0; i < columns.length(); ++i) {
+            RecordsColumn column = columns.get(i);
+            if (column != null) result.add(column);
+        }
+        return result;
     }
 
     /**
-     * Returns a pair of closest records for each attribute. Any of the pairs can contain same element
+     * Returns a single record for each attribute, interpolated between the closest records around t
      *
      * @param t
-     * @return a pair of closest records for each attribute
+     * @return a record for each attribute
      */
     public Iterable<SingleRecord<?>> getSnapshot(long t) {
-        List<SingleRecord<?>> result = new ArrayList<>();
+        SingleRecord<?>[] left = snapshots != null && !arrays ? snapshots.getState(t) : getState(t);
+        if (left == null) return Collections.emptyList();
 
-        TimedSnapshot key = new TimedSnapshot(t);
-
-        TimedSnapshot right = snapshots.ceiling(key);
-        if(right == null)
-        try {
-            return snapshots.last();
-        } catch (NoSuchElementException e) {
-            return Collections.emptyList();
-        }
-
-        Snapshot left = right.previous.get();
-        if(left == null) return right;
-
-        for (int i = 0; i < totalNumberOfAttributes; ++i) {
-            SingleRecord<?> leftRecord = left.get(i);
-            SingleRecord<?> rightRecord = right.get(i);
+        AtomicReferenceArray<RecordsColumn> columns = this.columns;
+        List<SingleRecord<?>> result = new ArrayList<>();
+        for (int i = 0; i < columns.length(); ++i) {
+            //state may predate attributes added at runtime
+            SingleRecord<?> leftRecord = i < left.length ? left[i] : null;
+            RecordsColumn column = columns.get(i);
+            SingleRecord<?> rightRecord = column == null ? null : column.higher(t);
 
             if(leftRecord == null && rightRecord == null) continue;
             if(leftRecord == null) {
@@ -101,8 +163,51 @@ public class AllRecords {
         return result;
     }
 
-    public Iterable<? extends Snapshot> getSnapshots(long t0, long t1){
-        return snapshots.subSet(new TimedSnapshot(t0), true, new TimedSnapshot(t1), true);
+    /**
+     * @return a snapshot for each record added in [t0, t1]
+     */
+    public Iterable<? extends Snapshot> getSnapshots(final long t0, final long t1){
+        if (snapshots != null && !arrays) return snapshots.getSnapshots(t0, t1);
+
+        return new Iterable<Snapshot>() {
+            @Override
+            public Iterator<Snapshot> iterator() {
+                final SingleRecord<?>[] initial = t0 == Long.MIN_VALUE ? new SingleRecord<?>[totalNumberOfAttributes] : getState(t0 - 1);
+                if (initial == null) return Collections.emptyIterator();
+                final Iterator<SingleRecord<?>> records = getRange(t0, t1).iterator();
+                return new Iterator<Snapshot>() {
+                    private SingleRecord<?>[] state = initial;
+
+                    @Override
+                    public boolean hasNext() {
+                        return records.hasNext();
+                    }
+
+                    @Override
+                    public Snapshot next() {
+                        SingleRecord<?> record = records.next();
+                        //attribute has been added after the state was taken
+                        if (record.id >= state.length) state = Arrays.copyOf(state, record.id + 1);
+                        state[record.id] = record;
+                        return new Snapshot(state);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return the last record of each column at t or null if there are no columns
+     */
+    private SingleRecord<?>[] getState(long t) {
+        List<RecordsColumn> columns = getColumns();
+        if (columns.isEmpty()) return null;
+
+        SingleRecord<?>[] result = new SingleRecord<?>[totalNumberOfAttributes];
+        for (RecordsColumn column : columns) {
+            result[column.id] = column.floor(t);
+        }
+        return result;
     }
 
     /**
@@ -110,14 +215,30 @@ public class AllRecords {
      * @return all records that were added after specified timestamp, aka getRange(t0, Long.MAX_VALUE)
      */
     public Iterable<SingleRecord<?>> getRange(long t0) {
-        return data.tailSet(new SingleRecord<>(null, t0, 0L, null));
+        return getRange(t0, Long.MAX_VALUE);
     }
 
     /**
      * @return inclusive data range
      */
     public Iterable<SingleRecord<?>> getRange(long t0, long t1) {
-        return data.subSet(new SingleRecord<>(null, t0, 0L, null), true, new SingleRecord<>(null, t1, 0L, null), true);
+        return new MergedRecords(getColumns(), t0, t1);
+    }
+
+    /**
+     * Only columns of the given attributes are read, so the cost does not depend on the other attributes
+     *
+     * @return inclusive data range of the attributes
+     */
+    public Iterable<SingleRecord<?>> getRange(long t0, long t1, Iterable<? extends Attribute<?>> attributes) {
+        List<RecordsColumn> result = new ArrayList<>();
+        AtomicReferenceArray<RecordsColumn> columns = this.columns;
+        for (Attribute<?> attribute : attributes) {
+            if (attribute == null || attribute.id >= columns.length()) continue;
+            RecordsColumn column = columns.get(attribute.id);
+            if (column != null) result.add(column);
+        }
+        return new MergedRecords(result, t0, t1);
     }
 
     /**
@@ -126,71 +247,120 @@ public class AllRecords {
      * @return
      */
     public Iterable<SingleRecord<?>> getRange() {
-        return data;
-    }
-
-    public void clear() {
-        data.clear();
-        snapshots.clear();
+        return getRange(Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     /**
-     * Clears this records removing all data older than timestamp
+     * Records with the same r_t are all kept and are ordered by attribute id and then by insertion order,
+     * see {@link MergedRecords}. This counts how often it happens.
      *
-     * @param timestamp
+     * @return number of added records that have the same r_t as the previously added one
      */
-    public void clear(long timestamp) {
-        data.headSet(new SingleRecord<>(null, timestamp, 0L, null)).clear();
-        snapshots.headSet(new TimedSnapshot(timestamp)).clear();
-        snapshots.first().previous.clear();
+    public long getCollisions() {
+        return collisions.sum();
     }
 
-    private static class SingleRecordComparator implements Comparator<SingleRecord<?>> {
-
-        @Override
-        public int compare(SingleRecord<?> o1, SingleRecord<?> o2) {
-            return Long.compare(o1.r_t, o2.r_t);
+    /**
+     * @return estimated size of all records collected so far
+     */
+    public long getMemoryUsage() {
+        long result = snapshots == null ? 0L : snapshots.getMemoryUsage();
+        for (RecordsColumn column : getColumns()) {
+            result += column.getMemoryUsage();
         }
+        return result;
     }
 
-    private static class SnapshotComparator implements Comparator<TimedSnapshot> {
+    /**
+     * @return estimated size of the attribute's records, snapshot history is shared and is not included
+     */
+    public long getMemoryUsage(Attribute<?> attribute) {
+        RecordsColumn column = columns.get(attribute.id);
+        return column == null ? 0L : column.getMemoryUsage();
+    }
 
-        @Override
-        public int compare(TimedSnapshot o1, TimedSnapshot o2) {
-            return Long.compare(o1.timestamp, o2.timestamp);
-        }
+    /**
+     * @param quota bytes, 0 - no quota
+     */
+    public void setQuota(Attribute<?> attribute, long quota) {
+        if (quota < 0) throw new IllegalArgumentException("quota must be positive!");
+        quotas.set(attribute.id, quota);
     }
 
-    private static class TimedSnapshot extends Snapshot {
-        private volatile long timestamp;
-        private final WeakReference<TimedSnapshot> previous;
+    public long getQuota(Attribute<?> attribute) {
+        return quotas.get(attribute.id);
+    }
 
-        public TimedSnapshot(int totalAttributesNumber) {
-            super(totalAttributesNumber);
-            this.previous = new WeakReference<TimedSnapshot>(null);
-            this.timestamp = System.currentTimeMillis();
+    /**
+     * First drops the oldest chunks of attributes that exceed their quotas. Then drops the oldest chunks overall,
+     * one by one, while they end before timestamp or memory usage exceeds the budget. Finally hides records older than
+     * timestamp that are left in the oldest chunk of each column, so retention applies to slowly updated attributes too.
+     * At most maxChunks are dropped per call, so the work done here is bounded regardless of the amount of data.
+     * Chunks being written are never dropped.
+     *
+     * @param timestamp records older than this are dropped
+     * @param memoryBudget bytes
+     * @param maxChunks the upper bound of the work
+     * @return number of dropped chunks
+     */
+    public int evict(long timestamp, long memoryBudget, int maxChunks) {
+        List<RecordsColumn> columns = getColumns();
+        long usage = getMemoryUsage();
+
+        int dropped = 0;
+        for (RecordsColumn column : columns) {
+            long quota = quotas.get(column.id);
+            if (quota == 0L) continue;
+            for (; dropped < maxChunks && column.getMemoryUsage() > quota; ++dropped) {
+                long freed = column.dropHead();
+                if (freed == 0L) break;
+                usage -= freed;
+            }
         }
 
-        public TimedSnapshot(long t) {
-            super();
-            timestamp = t;
-            previous = new WeakReference<TimedSnapshot>(null);
+        for (; dropped < maxChunks; ++dropped) {
+            RecordsColumn oldest = null;
+            long oldestEnd = Long.MAX_VALUE;
+            for (RecordsColumn column : columns) {
+                long end = column.headEnd();
+                if (end < oldestEnd) {
+                    oldest = column;
+                    oldestEnd = end;
+                }
+            }
+            if (oldest == null || oldestEnd >= timestamp && usage <= memoryBudget) break;
+
+            usage -= oldest.dropHead();
+            if (snapshots != null) {
+                usage -= snapshots.getMemoryUsage();
+                snapshots.clear(oldestEnd + 1);
+                usage += snapshots.getMemoryUsage();
+            }
         }
 
-        @Override
-        public SingleRecord update(SingleRecord record) {
-            timestamp = record.r_t;
-            return super.update(record);
+        for (RecordsColumn column : columns) {
+            column.trimHead(timestamp);
         }
+        if (snapshots != null) snapshots.clear(timestamp);
+        return dropped;
+    }
 
-        private TimedSnapshot(Object[] array, TimedSnapshot previous){
-            super(array);
-            this.timestamp = previous.timestamp;
-            this.previous = new WeakReference<TimedSnapshot>(previous);
+    public void clear() {
+        for (RecordsColumn column : getColumns()) {
+            column.clear();
         }
+        if (snapshots != null) snapshots.clear();
+    }
 
-        public TimedSnapshot copy(){
-            return new TimedSnapshot((Object[]) getArray(),this);
+    /**
+     * Clears this records removing all data older than timestamp
+     *
+     * @param timestamp
+     */
+    public void clear(long timestamp) {
+        for (RecordsColumn column : getColumns()) {
+            column.clear(timestamp);
         }
+        if (snapshots != null) snapshots.clear(timestamp);
     }
 }
@@ -0,0 +1,245 @@
+package wpn.hdri.ss.data2;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import static wpn.hdri.ss.data2.RecordsColumn.CHUNK_SIZE;
+
+/**
+ * Chunk of {@link ArrayRecord}s. Frames are copied into a byte buffer of a fixed size, so the column accounts for
+ * the whole memory taken by the arrays and quotas and memory budget apply to them.
+ * <p/>
+ * With compression each frame is stored as XOR of the previous frame: every element takes a byte with the number of
+ * significant bytes followed by these bytes, so an element that has not changed takes a single byte. Every
+ * {@link #KEYFRAME_INTERVAL}th frame, a frame of a different length or a frame that does not get smaller is stored
+ * as is. Reading a frame decodes it from the nearest keyframe.
+ * <p/>
+ * All frames of a chunk have the same element type, a frame of another type starts a new chunk.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+final class ArrayChunk extends RecordsColumn.HeapChunk {
+    static final int BUFFER_SIZE = 256 * 1024;
+    static final int KEYFRAME_INTERVAL = 16;
+
+    private final boolean compressed;
+    private final Class<?> elementType;
+    private final int width;
+    private final byte[] buffer;
+    /**
+     * Frame ndx takes [offsets[ndx], offsets[ndx + 1]) of the buffer
+     */
+    private final int[] offsets = new int[CHUNK_SIZE + 1];
+    private final int[] lengths = new int[CHUNK_SIZE];
+    private final int[] dimX = new int[CHUNK_SIZE];
+    private final int[] dimY = new int[CHUNK_SIZE];
+    private final boolean[] keyframes = new boolean[CHUNK_SIZE];
+
+    //used by the writer only
+    private long[] previous;
+    private byte[] scratch = new byte[0];
+
+    /**
+     * The last decoded frame, lets cursors decode consecutive frames one delta at a time
+     */
+    private volatile Decoded decoded;
+
+    /**
+     * @param first record that is going to be written first, defines element type and the minimal buffer size
+     */
+    ArrayChunk(ArrayRecord first, boolean compressed) {
+        this.compressed = compressed;
+        this.elementType = first.getValue().getClass().getComponentType();
+        this.width = width(elementType);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, first.length() * width)];
+    }
+
+    @Override
+    long bytes() {
+        return buffer.length + CHUNK_SIZE * (16L + 17);
+    }
+
+    @Override
+    boolean fits(SingleRecord<?> record) {
+        if (!super.fits(record) || !(record instanceof ArrayRecord)) return false;
+        Object value = record.getValue();
+        return value.getClass().getComponentType() == elementType
+                && offsets[size] + ((ArrayRecord) record).length() * width <= buffer.length;
+    }
+
+    @Override
+    void setValue(int ndx, SingleRecord<?> record) {
+        ArrayRecord arrayRecord = (ArrayRecord) record;
+        long[] bits = toBits(arrayRecord.getValue());
+        int offset = offsets[ndx];
+        int rawSize = bits.length * width;
+
+        boolean keyframe = !compressed || previous == null || ndx % KEYFRAME_INTERVAL == 0 || previous.length != bits.length;
+        int end = keyframe ? rawSize : encodeDelta(bits);
+        if (!keyframe && end >= rawSize) {
+            keyframe = true;
+            end = rawSize;
+        }
+        if (keyframe) {
+            for (int i = 0, pos = offset; i < bits.length; ++i, pos += width) {
+                write(buffer, pos, bits[i], width);
+            }
+        } else {
+            System.arraycopy(scratch, 0, buffer, offset, end);
+        }
+
+        keyframes[ndx] = keyframe;
+        lengths[ndx] = bits.length;
+        dimX[ndx] = arrayRecord.dimX;
+        dimY[ndx] = arrayRecord.dimY;
+        offsets[ndx + 1] = offset + end;
+        previous = bits;
+    }
+
+    /**
+     * @return number of bytes written into scratch
+     */
+    private int encodeDelta(long[] bits) {
+        int max = bits.length * (width + 1);
+        if (scratch.length < max) scratch = new byte[max];
+        int pos = 0;
+        for (int i = 0; i < bits.length; ++i) {
+            long xor = (bits[i] ^ previous[i]) & mask(width);
+            int n = (Long.SIZE - Long.numberOfLeadingZeros(xor) + 7) / 8;
+            scratch[pos++] = (byte) n;
+            write(scratch, pos, xor, n);
+            pos += n;
+        }
+        return pos;
+    }
+
+    @Override
+    SingleRecord<?> get(Attribute<?> attribute, int ndx) {
+        return new ArrayRecord((Attribute<Object>) attribute, r_t[ndx], w_t[ndx], fromBits(decode(ndx)), dimX[ndx], dimY[ndx]);
+    }
+
+    private long[] decode(int ndx) {
+        Decoded decoded = this.decoded;
+        if (decoded != null && decoded.ndx == ndx) return decoded.bits;
+
+        long[] bits;
+        if (keyframes[ndx]) {
+            bits = decodeKeyframe(ndx);
+        } else if (decoded != null && decoded.ndx == ndx - 1) {
+            bits = applyDelta(ndx, decoded.bits);
+        } else {
+            int keyframe = ndx;
+            while (!keyframes[keyframe]) --keyframe;
+            bits = decodeKeyframe(keyframe);
+            for (int i = keyframe + 1; i <= ndx; ++i) {
+                bits = applyDelta(i, bits);
+            }
+        }
+        this.decoded = new Decoded(ndx, bits);
+        return bits;
+    }
+
+    private long[] decodeKeyframe(int ndx) {
+        long[] result = new long[lengths[ndx]];
+        for (int i = 0, pos = offsets[ndx]; i < result.length; ++i, pos += width) {
+            result[i] = read(buffer, pos, width);
+        }
+        return result;
+    }
+
+    /**
+     * @param previous must not be modified, it may be shared with other readers
+     */
+    private long[] applyDelta(int ndx, long[] previous) {
+        long[] result = new long[lengths[ndx]];
+        for (int i = 0, pos = offsets[ndx]; i < result.length; ++i) {
+            int n = buffer[pos++];
+            result[i] = previous[i] ^ read(buffer, pos, n);
+            pos += n;
+        }
+        return result;
+    }
+
+    private long[] toBits(Object value) {
+        int length = Array.getLength(value);
+        long[] result = new long[length];
+        if (value instanceof double[]) {
+            double[] values = (double[]) value;
+            for (int i = 0; i < length; ++i) result[i] = Double.doubleToRawLongBits(values[i]);
+        } else if (value instanceof float[]) {
+            float[] values = (float[]) value;
+            for (int i = 0; i < length; ++i) result[i] = Float.floatToRawIntBits(values[i]);
+        } else if (value instanceof long[]) {
+            System.arraycopy(value, 0, result, 0, length);
+        } else {
+            for (int i = 0; i < length; ++i) result[i] = Array.getLong(value, i);
+        }
+        return result;
+    }
+
+    private Object fromBits(long[] bits) {
+        if (elementType == double.class) {
+            double[] result = new double[bits.length];
+            for (int i = 0; i < bits.length; ++i) result[i] = Double.longBitsToDouble(bits[i]);
+            return result;
+        } else if (elementType == float.class) {
+            float[] result = new float[bits.length];
+            for (int i = 0; i < bits.length; ++i) result[i] = Float.intBitsToFloat((int) bits[i]);
+            return result;
+        } else if (elementType == long.class) {
+            return Arrays.copyOf(bits, bits.length);
+        } else if (elementType == int.class) {
+            int[] result = new int[bits.length];
+            for (int i = 0; i < bits.length; ++i) result[i] = (int) bits[i];
+            return result;
+        } else if (elementType == short.class) {
+            short[] result = new short[bits.length];
+            for (int i = 0; i < bits.length; ++i) result[i] = (short) bits[i];
+            return result;
+        } else {
+            byte[] result = new byte[bits.length];
+            for (int i = 0; i < bits.length; ++i) result[i] = (byte) bits[i];
+            return result;
+        }
+    }
+
+    private static int width(Class<?> elementType) {
+        if (elementType == double.class || elementType == long.class) return 8;
+        if (elementType == float.class || elementType == int.class) return 4;
+        if (elementType == short.class) return 2;
+        if (elementType == byte.class) return 1;
+        throw new IllegalArgumentException("Unsupported array element type: " + elementType);
+    }
+
+    private static long mask(int width) {
+        return width == 8 ? -1L : (1L << (8 * width)) - 1;
+    }
+
+    /**
+     * Writes n low bytes of value, little endian
+     */
+    private static void write(byte[] buffer, int pos, long value, int n) {
+        for (int i = 0; i < n; ++i) {
+            buffer[pos + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static long read(byte[] buffer, int pos, int n) {
+        long result = 0L;
+        for (int i = 0; i < n; ++i) {
+            result |= (buffer[pos + i] & 0xFFL) << (8 * i);
+        }
+        return result;
+    }
+
+    private static final class Decoded {
+        final int ndx;
+        final long[] bits;
+
+        Decoded(int ndx, long[] bits) {
+            this.ndx = ndx;
+            this.bits = bits;
+        }
+    }
+}
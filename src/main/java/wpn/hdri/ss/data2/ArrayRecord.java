@@ -0,0 +1,52 @@
+package wpn.hdri.ss.data2;
+
+import java.lang.reflect.Array;
+
+/**
+ * Record of a spectrum or an image. Value is a flat primitive array, images are stored row by row.
+ * <p/>
+ * The array may be shared with other records and must not be modified.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public final class ArrayRecord extends SingleRecord<Object> {
+    public final int dimX;
+    /**
+     * 0 for spectra
+     */
+    public final int dimY;
+
+    public ArrayRecord(Attribute<Object> attribute, long r_t, long w_t, Object value, int dimX, int dimY) {
+        super(attribute, r_t, w_t, value);
+        this.dimX = dimX;
+        this.dimY = dimY;
+    }
+
+    /**
+     * @param value 1D primitive array for a spectrum, 2D primitive array for an image
+     */
+    public static ArrayRecord of(Attribute<Object> attribute, long r_t, long w_t, Object value) {
+        Class<?> component = value.getClass().getComponentType();
+        if (component != null && component.isPrimitive())
+            return new ArrayRecord(attribute, r_t, w_t, value, Array.getLength(value), 0);
+        if (component == null || component.getComponentType() == null || !component.getComponentType().isPrimitive())
+            throw new IllegalArgumentException("Primitive array expected, got " + value.getClass().getSimpleName());
+
+        int dimY = Array.getLength(value);
+        int dimX = dimY == 0 ? 0 : Array.getLength(Array.get(value, 0));
+        Object result = Array.newInstance(component.getComponentType(), dimX * dimY);
+        for (int y = 0; y < dimY; ++y) {
+            System.arraycopy(Array.get(value, y), 0, result, y * dimX, dimX);
+        }
+        return new ArrayRecord(attribute, r_t, w_t, result, dimX, dimY);
+    }
+
+    public int length() {
+        return Array.getLength(getValue());
+    }
+
+    public boolean isImage() {
+        return dimY > 0;
+    }
+}
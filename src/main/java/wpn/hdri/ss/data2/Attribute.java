@@ -18,8 +18,13 @@ public class Attribute<T> {
     public final String alias;
     public final Class<T> type;
     public final Interpolation interpolation;
+    public final RecordType recordType;
 
     public Attribute(int id, ClientAdaptor devClient, long delay, Method.EventType eventType, Class<T> type, String alias, String fullName, String name, Interpolation interpolation) {
+        this(id, devClient, delay, eventType, type, alias, fullName, name, interpolation, RecordType.forClass(type));
+    }
+
+    public Attribute(int id, ClientAdaptor devClient, long delay, Method.EventType eventType, Class<T> type, String alias, String fullName, String name, Interpolation interpolation, RecordType recordType) {
         this.id = id;
         this.devClient = devClient;
         this.delay = delay;
@@ -29,6 +34,7 @@ public class Attribute<T> {
         this.fullName = fullName;
         this.name = name;
         this.interpolation = interpolation;
+        this.recordType = recordType;
     }
 
     /**
@@ -49,6 +55,7 @@ public class Attribute<T> {
                 .add("type", type.getSimpleName())
                 .add("delay", delay)
                 .add("eventType", eventType)
-                .add("interpolation", interpolation).toString();
+                .add("interpolation", interpolation)
+                .add("recordType", recordType).toString();
     }
 }
@@ -0,0 +1,34 @@
+package wpn.hdri.ss.data2;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of read timestamps.
+ * <p/>
+ * Wall time is anchored once, timestamps are then derived from {@link System#nanoTime()}. So they have nanosecond
+ * resolution, are monotonic and do not jump when the system clock is adjusted.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public final class Clock {
+    private static final long ANCHOR_NANO;
+    private static final long ANCHOR_WALL;
+
+    static {
+        Instant now = Instant.now();
+        ANCHOR_NANO = System.nanoTime();
+        ANCHOR_WALL = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+    }
+
+    private Clock() {
+    }
+
+    /**
+     * @return ns since epoch
+     */
+    public static long currentTimeNanos() {
+        return ANCHOR_WALL + (System.nanoTime() - ANCHOR_NANO);
+    }
+}
@@ -0,0 +1,31 @@
+package wpn.hdri.ss.data2;
+
+/**
+ * Stores double value without boxing
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public final class DoubleRecord extends SingleRecord<Double> {
+    private final double value;
+
+    public DoubleRecord(Attribute<Double> attribute, long r_t, long w_t, double value) {
+        super(attribute, r_t, w_t, null);
+        this.value = value;
+    }
+
+    @Override
+    public Double getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean isNumber() {
+        return true;
+    }
+
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+}
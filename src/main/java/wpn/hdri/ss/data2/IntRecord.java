@@ -0,0 +1,35 @@
+package wpn.hdri.ss.data2;
+
+/**
+ * Stores int value without boxing
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public final class IntRecord extends SingleRecord<Integer> {
+    private final int value;
+
+    public IntRecord(Attribute<Integer> attribute, long r_t, long w_t, int value) {
+        super(attribute, r_t, w_t, null);
+        this.value = value;
+    }
+
+    public int intValue() {
+        return value;
+    }
+
+    @Override
+    public Integer getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean isNumber() {
+        return true;
+    }
+
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+}
@@ -24,26 +24,31 @@ public enum Interpolation {
     LINEAR {
         @Override
         public <T> SingleRecord<T> interpolateInternal(SingleRecord<T> left, SingleRecord<T> right, long t) {
-            if(!Number.class.isAssignableFrom(left.value.getClass())){
+            if(!left.isNumber() || !right.isNumber()){
                 logger.warn("Can not interpolate non number classes. Fallback to NEAREST interpolation.");
                 return NEAREST.interpolateInternal(left, right, t);
             }
 
-            double v0 = ((Number)left.value).doubleValue();
-            double v1 = ((Number)right.value).doubleValue();
+            double v0 = left.doubleValue();
+            double v1 = right.doubleValue();
 
             long t0 = left.r_t;
             long t1 = right.r_t;
 
-            double v = v0 + (v1 - v0) * ((t - t0) / (t1 - t0));
+            double v = t1 == t0 ? v0 : v0 + (v1 - v0) * ((double) (t - t0) / (t1 - t0));
 
-            if(left.value.getClass() == short.class)
+            RecordType recordType = left.attribute == null ? RecordType.OBJECT : left.attribute.recordType;
+            if(recordType.isPrimitive())
+                return (SingleRecord<T>) recordType.newRecord(left.attribute, t, left.w_t, v);
+
+            Class<?> valueClass = left.getValue().getClass();
+            if(valueClass == Short.class)
                 return new SingleRecord<>(left.attribute, t, left.w_t, (T)(Short)(short) v);
-            else if(left.value.getClass() == int.class)
+            else if(valueClass == Integer.class)
                 return new SingleRecord<>(left.attribute, t, left.w_t, (T)(Integer)(int) v);
-            else if(left.value.getClass() == long.class)
+            else if(valueClass == Long.class)
                 return new SingleRecord<>(left.attribute, t, left.w_t, (T)(Long)(long) v);
-            else if(left.value.getClass() == float.class)
+            else if(valueClass == Float.class)
                 return new SingleRecord<>(left.attribute, t, left.w_t, (T)(Float)(float) v);
             else
                 return new SingleRecord<>(left.attribute, t, left.w_t, (T)(Double) v);
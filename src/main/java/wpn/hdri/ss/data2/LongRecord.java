@@ -0,0 +1,35 @@
+package wpn.hdri.ss.data2;
+
+/**
+ * Stores long value without boxing
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public final class LongRecord extends SingleRecord<Long> {
+    private final long value;
+
+    public LongRecord(Attribute<Long> attribute, long r_t, long w_t, long value) {
+        super(attribute, r_t, w_t, null);
+        this.value = value;
+    }
+
+    public long longValue() {
+        return value;
+    }
+
+    @Override
+    public Long getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean isNumber() {
+        return true;
+    }
+
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+}
@@ -0,0 +1,174 @@
+package wpn.hdri.ss.data2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap storage for {@link RecordsColumn}s.
+ * <p/>
+ * Each primitive attribute gets a chain of segment files under root/attribute.id. A segment is memory mapped and
+ * holds up to {@link #SEGMENT_SIZE} fixed width records: r_t, w_t and value bits, 8 bytes each. So the heap keeps
+ * only segment headers, no matter how long the collection runs. Non primitive attributes are kept on the heap.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+public class MappedStorage {
+    private static final Logger logger = LoggerFactory.getLogger(MappedStorage.class);
+
+    static final int SEGMENT_SIZE = 64 * 1024;
+    static final int RECORD_WIDTH = 3 * 8;
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File root;
+    private final AtomicLong segments = new AtomicLong();
+
+    /**
+     * Segments left by a previous run in root are deleted
+     *
+     * @param root storage directory of a single device instance
+     */
+    public MappedStorage(File root) {
+        if (!root.isDirectory() && !root.mkdirs())
+            throw new IllegalArgumentException("Can not create storage root " + root.getAbsolutePath());
+        this.root = root;
+        deleteSegments(root);
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * @return a new mapped chunk or null if segment file can not be mapped, in this case column falls back to the heap
+     */
+    RecordsColumn.Chunk newChunk(int id, RecordType recordType) {
+        File dir = new File(root, String.valueOf(id));
+        File file = new File(dir, segments.getAndIncrement() + SEGMENT_SUFFIX);
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can not create " + dir.getAbsolutePath());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                //mapping stays valid after the channel is closed
+                ByteBuffer buffer = raf.getChannel()
+                        .map(FileChannel.MapMode.READ_WRITE, 0L, (long) SEGMENT_SIZE * RECORD_WIDTH)
+                        .order(ByteOrder.nativeOrder());
+                return new MappedChunk(file, buffer, recordType);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to map segment {}. Falling back to heap.", file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private static void deleteSegments(File root) {
+        File[] dirs = root.listFiles();
+        if (dirs == null) return;
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files == null) continue;
+            for (File file : files) {
+                if (file.getName().endsWith(SEGMENT_SUFFIX)) delete(file);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.delete()) {
+            logger.debug("Can not delete segment {}, will try on exit", file.getAbsolutePath());
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Layout: r_t[SEGMENT_SIZE], w_t[SEGMENT_SIZE], value[SEGMENT_SIZE]. Writes are published by {@link #size}.
+     */
+    static final class MappedChunk extends RecordsColumn.Chunk {
+        private static final int W_T_OFFSET = SEGMENT_SIZE * 8;
+        private static final int VALUE_OFFSET = SEGMENT_SIZE * 16;
+
+        private final File file;
+        private final ByteBuffer buffer;
+        private final RecordType recordType;
+
+        MappedChunk(File file, ByteBuffer buffer, RecordType recordType) {
+            this.file = file;
+            this.buffer = buffer;
+            this.recordType = recordType;
+        }
+
+        @Override
+        int capacity() {
+            return SEGMENT_SIZE;
+        }
+
+        @Override
+        long bytes() {
+            return (long) SEGMENT_SIZE * RECORD_WIDTH;
+        }
+
+        @Override
+        long r_t(int ndx) {
+            return buffer.getLong(ndx << 3);
+        }
+
+        @Override
+        long w_t(int ndx) {
+            return buffer.getLong(W_T_OFFSET + (ndx << 3));
+        }
+
+        @Override
+        void set(int ndx, SingleRecord<?> record) {
+            buffer.putLong(ndx << 3, record.r_t);
+            buffer.putLong(W_T_OFFSET + (ndx << 3), record.w_t);
+            buffer.putLong(VALUE_OFFSET + (ndx << 3), toBits(record));
+        }
+
+        private long toBits(SingleRecord<?> record) {
+            switch (recordType) {
+                case DOUBLE:
+                    return Double.doubleToRawLongBits(record.doubleValue());
+                case LONG:
+                    return record instanceof LongRecord ? ((LongRecord) record).longValue() : ((Number) record.getValue()).longValue();
+                case INT:
+                    return record instanceof IntRecord ? ((IntRecord) record).intValue() : ((Number) record.getValue()).intValue();
+                default:
+                    throw new IllegalStateException("Can not map " + recordType);
+            }
+        }
+
+        @Override
+        SingleRecord<?> get(Attribute<?> attribute, int ndx) {
+            long r_t = r_t(ndx);
+            long w_t = w_t(ndx);
+            long bits = buffer.getLong(VALUE_OFFSET + (ndx << 3));
+            switch (recordType) {
+                case DOUBLE:
+                    return new DoubleRecord((Attribute<Double>) attribute, r_t, w_t, Double.longBitsToDouble(bits));
+                case LONG:
+                    return new LongRecord((Attribute<Long>) attribute, r_t, w_t, bits);
+                case INT:
+                    return new IntRecord((Attribute<Integer>) attribute, r_t, w_t, (int) bits);
+                default:
+                    throw new IllegalStateException("Can not map " + recordType);
+            }
+        }
+
+        /**
+         * Unmapping is left to GC as there might be cursors still reading this chunk
+         */
+        @Override
+        void release() {
+            delete(file);
+        }
+    }
+}
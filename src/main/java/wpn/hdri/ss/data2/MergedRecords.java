@@ -0,0 +1,58 @@
+package wpn.hdri.ss.data2;
+
+import java.util.*;
+
+/**
+ * Merges ranges of several {@link RecordsColumn} by read timestamp.
+ * <p/>
+ * The order is total: (r_t, attribute id, position in the column). There is exactly one cursor per column and a
+ * column is ordered by r_t and then by insertion, so no record is ever lost because of equal timestamps.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+class MergedRecords implements Iterable<SingleRecord<?>> {
+    private static final Comparator<RecordsColumn.Cursor> CURSOR_COMPARATOR = new Comparator<RecordsColumn.Cursor>() {
+        @Override
+        public int compare(RecordsColumn.Cursor o1, RecordsColumn.Cursor o2) {
+            int result = Long.compare(o1.peek(), o2.peek());
+            return result != 0 ? result : Integer.compare(o1.id(), o2.id());
+        }
+    };
+
+    private final Iterable<RecordsColumn> columns;
+    private final long t0;
+    private final long t1;
+
+    MergedRecords(Iterable<RecordsColumn> columns, long t0, long t1) {
+        this.columns = columns;
+        this.t0 = t0;
+        this.t1 = t1;
+    }
+
+    @Override
+    public Iterator<SingleRecord<?>> iterator() {
+        final PriorityQueue<RecordsColumn.Cursor> cursors = new PriorityQueue<>(CURSOR_COMPARATOR);
+        for (RecordsColumn column : columns) {
+            if (column == null) continue;
+            RecordsColumn.Cursor cursor = column.range(t0, t1);
+            if (cursor.hasNext()) cursors.add(cursor);
+        }
+
+        return new Iterator<SingleRecord<?>>() {
+            @Override
+            public boolean hasNext() {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public SingleRecord<?> next() {
+                RecordsColumn.Cursor cursor = cursors.poll();
+                if (cursor == null) throw new NoSuchElementException();
+                SingleRecord<?> result = cursor.next();
+                if (cursor.hasNext()) cursors.add(cursor);
+                return result;
+            }
+        };
+    }
+}
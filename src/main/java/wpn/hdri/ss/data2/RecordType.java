@@ -0,0 +1,112 @@
+package wpn.hdri.ss.data2;
+
+/**
+ * Defines how values of an attribute are stored. Numeric scalars are stored as primitives, numeric spectra and images
+ * as {@link ArrayRecord}s, everything else is boxed.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public enum RecordType {
+    DOUBLE {
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, double value) {
+            return new DoubleRecord((Attribute<Double>) attribute, r_t, w_t, value);
+        }
+
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, Object value) {
+            return newRecord(attribute, r_t, w_t, ((Number) value).doubleValue());
+        }
+    },
+    LONG {
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, double value) {
+            return new LongRecord((Attribute<Long>) attribute, r_t, w_t, (long) value);
+        }
+
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, Object value) {
+            return new LongRecord((Attribute<Long>) attribute, r_t, w_t, ((Number) value).longValue());
+        }
+    },
+    INT {
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, double value) {
+            return new IntRecord((Attribute<Integer>) attribute, r_t, w_t, (int) value);
+        }
+
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, Object value) {
+            return new IntRecord((Attribute<Integer>) attribute, r_t, w_t, ((Number) value).intValue());
+        }
+    },
+    ARRAY {
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, double value) {
+            return newRecord(attribute, r_t, w_t, new double[]{value});
+        }
+
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, Object value) {
+            return ArrayRecord.of((Attribute<Object>) attribute, r_t, w_t, value);
+        }
+
+        @Override
+        public boolean isPrimitive() {
+            return false;
+        }
+    },
+    OBJECT {
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, double value) {
+            return newRecord(attribute, r_t, w_t, (Object) value);
+        }
+
+        @Override
+        public SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, Object value) {
+            return new SingleRecord<>((Attribute<Object>) attribute, r_t, w_t, value);
+        }
+
+        @Override
+        public boolean isPrimitive() {
+            return false;
+        }
+    };
+
+    /**
+     * @param type attribute's value type as returned by {@link wpn.hdri.ss.client.Client#getAttributeClass(String)}
+     * @return record type for the value type
+     */
+    public static RecordType forClass(Class<?> type) {
+        if (type == double.class || type == Double.class) return DOUBLE;
+        else if (type == long.class || type == Long.class) return LONG;
+        else if (type == int.class || type == Integer.class) return INT;
+        else if (isNumericArray(type)) return ARRAY;
+        else return OBJECT;
+    }
+
+    /**
+     * @return true for 1D and 2D arrays of numeric primitives
+     */
+    private static boolean isNumericArray(Class<?> type) {
+        if (type == null || !type.isArray()) return false;
+        Class<?> component = type.getComponentType();
+        if (component.isArray()) component = component.getComponentType();
+        return component.isPrimitive() && component != boolean.class && component != char.class;
+    }
+
+    /**
+     * @return true if values are numeric scalars stored without boxing
+     */
+    public boolean isPrimitive() {
+        return true;
+    }
+
+    public abstract SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, double value);
+
+    /**
+     * Unboxes value if this type is primitive
+     */
+    public abstract SingleRecord<?> newRecord(Attribute<?> attribute, long r_t, long w_t, Object value);
+}
@@ -0,0 +1,429 @@
+package wpn.hdri.ss.data2;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Append-only column of records of a single attribute.
+ * <p/>
+ * Records are stored in fixed size chunks ordered by r_t, either in primitive arrays on the heap or, if column has
+ * {@link MappedStorage}, in memory mapped segment files. Spectra and images are stored in {@link ArrayChunk}s.
+ * By definition there is only one thread that appends to a column, while many threads may read from it. Readers never
+ * block.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+class RecordsColumn {
+    static final int CHUNK_SIZE = 1024;
+
+    final Attribute<?> attribute;
+    final int id;
+    /**
+     * Off-heap storage for primitive chunks, null if all chunks live on the heap
+     */
+    private final MappedStorage storage;
+    /**
+     * Whether array chunks store frames as deltas, see {@link ArrayChunk}
+     */
+    private final boolean compressArrays;
+
+    /**
+     * Copy-on-write array of chunks. Only the last chunk is being written
+     */
+    private volatile Chunk[] chunks = new Chunk[0];
+    /**
+     * Estimated size of all chunks, guarded by this
+     */
+    private volatile long bytes;
+
+    RecordsColumn(Attribute<?> attribute) {
+        this(attribute, null);
+    }
+
+    RecordsColumn(Attribute<?> attribute, MappedStorage storage) {
+        this(attribute, storage, false);
+    }
+
+    RecordsColumn(Attribute<?> attribute, MappedStorage storage, boolean compressArrays) {
+        this.attribute = attribute;
+        this.id = attribute == null ? 0 : attribute.id;
+        this.storage = storage;
+        this.compressArrays = compressArrays;
+    }
+
+    /**
+     * @param record a new record
+     * @return false if record has the same write timestamp as the last one, i.e. was not appended
+     */
+    boolean append(SingleRecord<?> record) {
+        Chunk[] chunks = this.chunks;
+        Chunk last = chunks.length == 0 ? null : chunks[chunks.length - 1];
+        if (last != null && last.size > last.from && last.w_t(last.size - 1) == record.w_t) return false;
+
+        if (last == null || !last.fits(record)) {
+            last = newChunk(record);
+            last.set(0, record);
+            last.size = 1;
+            addChunk(last);
+        } else {
+            int ndx = last.size;
+            last.set(ndx, record);
+            last.size = ndx + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @param record the first record of the new chunk
+     */
+    Chunk newChunk(SingleRecord<?> record) {
+        RecordType recordType = attribute == null ? RecordType.OBJECT : attribute.recordType;
+        if (storage != null && recordType.isPrimitive()) {
+            Chunk chunk = storage.newChunk(id, recordType);
+            if (chunk != null) return chunk;
+        }
+
+        switch (recordType) {
+            case DOUBLE:
+                return new DoubleChunk();
+            case LONG:
+                return new LongChunk();
+            case INT:
+                return new IntChunk();
+            case ARRAY:
+                //records that are not created by RecordType.ARRAY are kept as objects
+                if (record instanceof ArrayRecord) return new ArrayChunk((ArrayRecord) record, compressArrays);
+            default:
+                return new ObjectChunk();
+        }
+    }
+
+    private synchronized void addChunk(Chunk chunk) {
+        Chunk[] chunks = Arrays.copyOf(this.chunks, this.chunks.length + 1);
+        chunks[chunks.length - 1] = chunk;
+        this.chunks = chunks;
+        this.bytes += chunk.bytes();
+    }
+
+    long getMemoryUsage() {
+        return bytes;
+    }
+
+    /**
+     * @return r_t of the last record in the oldest chunk that can be dropped or Long.MAX_VALUE if there is no such
+     */
+    long headEnd() {
+        Chunk[] chunks = this.chunks;
+        if (chunks.length < 2) return Long.MAX_VALUE;
+        Chunk head = chunks[0];
+        return head.r_t(head.size - 1);
+    }
+
+    /**
+     * Drops the oldest chunk. The chunk being written is never dropped
+     *
+     * @return number of freed bytes
+     */
+    synchronized long dropHead() {
+        Chunk[] chunks = this.chunks;
+        if (chunks.length < 2) return 0L;
+        this.chunks = Arrays.copyOfRange(chunks, 1, chunks.length);
+        release(chunks, 1);
+        return chunks[0].bytes();
+    }
+
+    /**
+     * Removes all records with r_t LT timestamp
+     *
+     * @param timestamp
+     */
+    synchronized void clear(long timestamp) {
+        Chunk[] chunks = this.chunks;
+        int drop = 0;
+        for (; drop < chunks.length - 1; ++drop) {
+            Chunk chunk = chunks[drop];
+            if (chunk.r_t(chunk.size - 1) >= timestamp) break;
+        }
+        if (drop > 0) {
+            this.chunks = Arrays.copyOfRange(chunks, drop, chunks.length);
+            release(chunks, drop);
+        }
+        trimHead(timestamp);
+    }
+
+    /**
+     * Hides records of the oldest chunk with r_t LT timestamp, the chunk itself is freed by {@link #dropHead()}
+     */
+    synchronized void trimHead(long timestamp) {
+        Chunk[] chunks = this.chunks;
+        if (chunks.length > 0) chunks[0].from = chunks[0].lowerBound(timestamp);
+    }
+
+    synchronized void clear() {
+        Chunk[] chunks = this.chunks;
+        this.chunks = new Chunk[0];
+        release(chunks, chunks.length);
+    }
+
+    /**
+     * Must be called under this
+     */
+    private void release(Chunk[] chunks, int count) {
+        for (int i = 0; i < count; ++i) {
+            bytes -= chunks[i].bytes();
+            chunks[i].release();
+        }
+    }
+
+    /**
+     * @return inclusive range of this column
+     */
+    Cursor range(long t0, long t1) {
+        return new Cursor(chunks, t0, t1);
+    }
+
+    /**
+     * @return the first record with r_t GT t or null
+     */
+    SingleRecord<?> higher(long t) {
+        if (t == Long.MAX_VALUE) return null;
+        Cursor cursor = range(t + 1, Long.MAX_VALUE);
+        return cursor.hasNext() ? cursor.next() : null;
+    }
+
+    /**
+     * @return the last record with r_t LE t or null
+     */
+    SingleRecord<?> floor(long t) {
+        Chunk[] chunks = this.chunks;
+        for (int i = chunks.length - 1; i >= 0; --i) {
+            Chunk chunk = chunks[i];
+            int size = chunk.size;
+            if (size == chunk.from || chunk.r_t(chunk.from) > t) continue;
+            int ndx = t == Long.MAX_VALUE ? size : chunk.lowerBound(t + 1, size);
+            return chunk.get(attribute, ndx - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over a fixed view of the column. Records appended after the cursor has been created are not visible.
+     */
+    final class Cursor {
+        private final Chunk[] chunks;
+        private final long t1;
+        private final int lastSize;
+        private int chunk;
+        private int pos;
+
+        private Cursor(Chunk[] chunks, long t0, long t1) {
+            this.chunks = chunks;
+            this.t1 = t1;
+            this.lastSize = chunks.length == 0 ? 0 : chunks[chunks.length - 1].size;
+
+            //chunks are time buckets: binary search for the first one that ends at or after t0
+            int low = 0;
+            int high = chunks.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (chunks[mid].r_t(size(mid) - 1) < t0) low = mid + 1;
+                else high = mid;
+            }
+            chunk = low;
+            if (chunk < chunks.length) pos = chunks[chunk].lowerBound(t0, size(chunk));
+        }
+
+        private int size(int chunk) {
+            return chunk == chunks.length - 1 ? lastSize : chunks[chunk].size;
+        }
+
+        boolean hasNext() {
+            if (chunk >= chunks.length) return false;
+            if (pos == size(chunk)) {
+                if (++chunk == chunks.length) return false;
+                pos = chunks[chunk].from;
+                if (pos == size(chunk)) return false;
+            }
+            return chunks[chunk].r_t(pos) <= t1;
+        }
+
+        /**
+         * @return r_t of the next record, must be called after {@link #hasNext()}
+         */
+        long peek() {
+            return chunks[chunk].r_t(pos);
+        }
+
+        int id() {
+            return id;
+        }
+
+        SingleRecord<?> next() {
+            return chunks[chunk].get(attribute, pos++);
+        }
+    }
+
+    abstract static class Chunk {
+        /**
+         * Number of records written into this chunk
+         */
+        volatile int size;
+        /**
+         * First live record in this chunk
+         */
+        volatile int from;
+
+        abstract int capacity();
+
+        /**
+         * @return whether the record can be appended to this chunk
+         */
+        boolean fits(SingleRecord<?> record) {
+            return size < capacity();
+        }
+
+        /**
+         * @return estimated size of this chunk, values referenced by object chunks are not counted
+         */
+        abstract long bytes();
+
+        abstract long r_t(int ndx);
+
+        abstract long w_t(int ndx);
+
+        abstract void set(int ndx, SingleRecord<?> record);
+
+        abstract SingleRecord<?> get(Attribute<?> attribute, int ndx);
+
+        /**
+         * Called once the chunk has been dropped from the column. Cursors created before may still read it.
+         */
+        void release() {
+        }
+
+        int lowerBound(long t) {
+            return lowerBound(t, size);
+        }
+
+        /**
+         * @return index of the first record with r_t GE t in [from, size)
+         */
+        int lowerBound(long t, int size) {
+            int low = from;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (r_t(mid) < t) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+
+    abstract static class HeapChunk extends Chunk {
+        final long[] r_t = new long[CHUNK_SIZE];
+        final long[] w_t = new long[CHUNK_SIZE];
+
+        @Override
+        int capacity() {
+            return CHUNK_SIZE;
+        }
+
+        @Override
+        long r_t(int ndx) {
+            return r_t[ndx];
+        }
+
+        @Override
+        long w_t(int ndx) {
+            return w_t[ndx];
+        }
+
+        @Override
+        void set(int ndx, SingleRecord<?> record) {
+            r_t[ndx] = record.r_t;
+            w_t[ndx] = record.w_t;
+            setValue(ndx, record);
+        }
+
+        abstract void setValue(int ndx, SingleRecord<?> record);
+    }
+
+    static final class ObjectChunk extends HeapChunk {
+        private final Object[] values = new Object[CHUNK_SIZE];
+
+        @Override
+        long bytes() {
+            return CHUNK_SIZE * (16L + 8);
+        }
+
+        @Override
+        void setValue(int ndx, SingleRecord<?> record) {
+            values[ndx] = record.getValue();
+        }
+
+        @Override
+        SingleRecord<?> get(Attribute<?> attribute, int ndx) {
+            return new SingleRecord<>((Attribute<Object>) attribute, r_t[ndx], w_t[ndx], values[ndx]);
+        }
+    }
+
+    static final class DoubleChunk extends HeapChunk {
+        private final double[] values = new double[CHUNK_SIZE];
+
+        @Override
+        long bytes() {
+            return CHUNK_SIZE * (16L + 8);
+        }
+
+        @Override
+        void setValue(int ndx, SingleRecord<?> record) {
+            values[ndx] = record.doubleValue();
+        }
+
+        @Override
+        SingleRecord<?> get(Attribute<?> attribute, int ndx) {
+            return new DoubleRecord((Attribute<Double>) attribute, r_t[ndx], w_t[ndx], values[ndx]);
+        }
+    }
+
+    static final class LongChunk extends HeapChunk {
+        private final long[] values = new long[CHUNK_SIZE];
+
+        @Override
+        long bytes() {
+            return CHUNK_SIZE * (16L + 8);
+        }
+
+        @Override
+        void setValue(int ndx, SingleRecord<?> record) {
+            values[ndx] = record instanceof LongRecord ? ((LongRecord) record).longValue() : ((Number) record.getValue()).longValue();
+        }
+
+        @Override
+        SingleRecord<?> get(Attribute<?> attribute, int ndx) {
+            return new LongRecord((Attribute<Long>) attribute, r_t[ndx], w_t[ndx], values[ndx]);
+        }
+    }
+
+    static final class IntChunk extends HeapChunk {
+        private final int[] values = new int[CHUNK_SIZE];
+
+        @Override
+        long bytes() {
+            return CHUNK_SIZE * (16L + 4);
+        }
+
+        @Override
+        void setValue(int ndx, SingleRecord<?> record) {
+            values[ndx] = record instanceof IntRecord ? ((IntRecord) record).intValue() : ((Number) record.getValue()).intValue();
+        }
+
+        @Override
+        SingleRecord<?> get(Attribute<?> attribute, int ndx) {
+            return new IntRecord((Attribute<Integer>) attribute, r_t[ndx], w_t[ndx], values[ndx]);
+        }
+    }
+}
@@ -8,9 +8,9 @@ package wpn.hdri.ss.data2;
 public class SingleRecord<T> {
     public final int id;
     public final Attribute<T> attribute; //attr.id
-    public final long r_t; //read_timestamp
-    public final long w_t; //write_timestamp
-    public final T value; //value bits
+    public final long r_t; //read timestamp, ns since epoch, see Clock
+    public final long w_t; //write timestamp, ms since epoch as reported by the source
+    private final T value; //value bits
     //TODO do we need padding here?
 
     public SingleRecord(Attribute<T> attribute, long r_t, long w_t, T value) {
@@ -21,22 +21,45 @@ public class SingleRecord<T> {
         this.value = value;
     }
 
+    /**
+     * Primitive records box their value here, so this must not be used on the hot path
+     *
+     * @return value of this record
+     */
+    public T getValue() {
+        return value;
+    }
+
+    public boolean isNumber() {
+        return value instanceof Number;
+    }
+
+    /**
+     * @return value as double, {@link #isNumber()} must be true
+     */
+    public double doubleValue() {
+        return ((Number) value).doubleValue();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (o == null || !(o instanceof SingleRecord)) return false;
 
         SingleRecord that = (SingleRecord) o;
 
         if (r_t != that.r_t) return false;
         if (id != that.id) return false;
-        if (value != null ? !value.equals(that.value) : that.value != null) return false;
+        Object value = getValue();
+        Object thatValue = that.getValue();
+        if (value != null ? !value.equals(thatValue) : thatValue != null) return false;
 
         return true;
     }
 
     @Override
     public int hashCode() {
+        Object value = getValue();
         int result = id;
         result = 31 * result + (int) (r_t ^ (r_t >>> 32));
         result = 31 * result + (value != null ? value.hashCode() : 0);
@@ -7,7 +7,7 @@ package wpn.hdri.ss.data2;
 public class SingleRecords {
     public static String toString(SingleRecord<?> record, Attribute attribute, boolean useAlias, boolean encode){
         StringBuilder bld = new StringBuilder(useAlias ? attribute.alias : attribute.fullName);
-        bld.append("\n@").append(record.r_t).append('[').append(String.valueOf(record.value)).append('@').append(record.w_t).append("]\n");
+        bld.append("\n@").append(record.r_t).append('[').append(String.valueOf(record.getValue())).append('@').append(record.w_t).append("]\n");
         return bld.toString();
     }
 }
@@ -3,17 +3,26 @@ package wpn.hdri.ss.data2;
 import hzg.wpn.UnsafeSupport;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class contains latest values for each attribute protocolled by the StatusServer
+ * <p/>
+ * Each slot carries a sequence number that is incremented on every update, so clients may find changed slots
+ * by a lock-free scan, see {@link #getUpdates(long[])}
+ * <p/>
+ * Snapshot may {@link #grow(int)} when attributes are added at runtime
  *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 09.11.2015
  */
 public class Snapshot implements Iterable<SingleRecord<?>>{
-    private final AtomicReferenceArray<SingleRecord<?>> data;
+    private volatile AtomicReferenceArray<SingleRecord<?>> data;
+    private volatile AtomicLongArray sequences;
 
     private static final long FLD_ARRAY_OFFSET;
     static {
@@ -32,12 +41,14 @@ public class Snapshot implements Iterable<SingleRecord<?>>{
     public Snapshot(int totalAttributesNumber) {
         //TODO initialize array with non-null values (SingleRecore with value == null)
         this.data = new AtomicReferenceArray<>(totalAttributesNumber);
+        this.sequences = new AtomicLongArray(totalAttributesNumber);
         arrayBaseOffset = UnsafeSupport.UNSAFE.arrayBaseOffset(getArray().getClass());
         arrayIndexScale = UnsafeSupport.UNSAFE.arrayIndexScale(getArray().getClass());
     }
 
     protected Snapshot(){
         this.data = null;
+        this.sequences = null;
         arrayBaseOffset = 0L;
         arrayIndexScale = 0L;
     }
@@ -45,6 +56,7 @@ public class Snapshot implements Iterable<SingleRecord<?>>{
     protected Snapshot(Object[] array){
         if (array == null ) this.data = null;
         else this.data = new AtomicReferenceArray(array);
+        this.sequences = null;
         arrayBaseOffset = UnsafeSupport.UNSAFE.arrayBaseOffset(array.getClass());
         arrayIndexScale = UnsafeSupport.UNSAFE.arrayIndexScale(array.getClass());
     }
@@ -63,7 +75,84 @@ public class Snapshot implements Iterable<SingleRecord<?>>{
      */
     public SingleRecord update(SingleRecord record){
         int ndx = record.id;
-        return data.getAndSet(ndx, record);
+        SingleRecord old = data.getAndSet(ndx, record);
+        //published after the record, so a reader that sees the new sequence sees the new record
+        sequences.incrementAndGet(ndx);
+        return old;
+    }
+
+    /**
+     * Empties the slot, e.g. when its attribute is no longer monitored
+     *
+     * @param ndx slot
+     */
+    public void clear(int ndx) {
+        data.set(ndx, null);
+        sequences.incrementAndGet(ndx);
+    }
+
+    public int size() {
+        return data.length();
+    }
+
+    /**
+     * Adds empty slots up to size, existing slots keep their records and sequences.
+     * Must not run concurrently with {@link #update(SingleRecord)}, see {@link wpn.hdri.ss.engine2.DataStorage#grow(int)}
+     *
+     * @param size new number of slots
+     */
+    public void grow(int size) {
+        AtomicReferenceArray<SingleRecord<?>> data = this.data;
+        AtomicLongArray sequences = this.sequences;
+        if (size <= data.length()) return;
+        AtomicReferenceArray<SingleRecord<?>> newData = new AtomicReferenceArray<>(size);
+        AtomicLongArray newSequences = new AtomicLongArray(size);
+        for (int i = 0, length = data.length(); i < length; ++i) {
+            newData.set(i, data.get(i));
+            newSequences.set(i, sequences.get(i));
+        }
+        this.sequences = newSequences;
+        this.data = newData;
+    }
+
+    /**
+     * Slots beyond lastSequences.length are not scanned, a client grows its array when {@link #size()} grows
+     *
+     * @param lastSequences sequence numbers seen by a client so far, one per slot, updated by this method
+     * @return records updated since lastSequences
+     */
+    public List<SingleRecord<?>> getUpdates(long[] lastSequences) {
+        AtomicReferenceArray<SingleRecord<?>> data = this.data;
+        AtomicLongArray sequences = this.sequences;
+        List<SingleRecord<?>> result = new ArrayList<>();
+        for (int i = 0, size = Math.min(data.length(), lastSequences.length); i < size; ++i) {
+            getUpdate(data, sequences, i, lastSequences, result);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #getUpdates(long[])} but scans only the slots of the given attributes
+     */
+    public List<SingleRecord<?>> getUpdates(long[] lastSequences, Iterable<? extends Attribute<?>> attributes) {
+        AtomicReferenceArray<SingleRecord<?>> data = this.data;
+        AtomicLongArray sequences = this.sequences;
+        List<SingleRecord<?>> result = new ArrayList<>();
+        for (Attribute<?> attribute : attributes) {
+            if (attribute != null && attribute.id < Math.min(data.length(), lastSequences.length))
+                getUpdate(data, sequences, attribute.id, lastSequences, result);
+        }
+        return result;
+    }
+
+    private static void getUpdate(AtomicReferenceArray<SingleRecord<?>> data, AtomicLongArray sequences, int ndx,
+                                  long[] lastSequences, List<SingleRecord<?>> result) {
+        //sequence is read first: a concurrent update may be returned twice but is never lost
+        long sequence = sequences.get(ndx);
+        if (sequence == lastSequences[ndx]) return;
+        SingleRecord<?> record = data.get(ndx);
+        lastSequences[ndx] = sequence;
+        if (record != null) result.add(record);
     }
 
     /**
@@ -73,8 +162,8 @@ public class Snapshot implements Iterable<SingleRecord<?>>{
      */
     @Override
     public final Iterator<SingleRecord<?>> iterator() {
-        final long size = data.length();
         final Object array = getArray();
+        final long size = ((Object[]) array).length;
 
         return new Iterator<SingleRecord<?>>() {
             private int pos = 0;
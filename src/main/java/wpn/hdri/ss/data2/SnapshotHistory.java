@@ -0,0 +1,260 @@
+package wpn.hdri.ss.data2;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps the history of {@link Snapshot}s as a chain of deltas.
+ * <p/>
+ * History is split into segments. Each segment starts with a keyframe - a full copy of the state before its first
+ * delta, followed by at most {@link #keyframeInterval} deltas, one per added record. Any state is rebuilt from the
+ * nearest keyframe, so adding a record costs O(1) instead of a copy of the whole snapshot.
+ * <p/>
+ * After {@link #grow(int)} a new segment is started, so states rebuilt from older segments are shorter than the
+ * current one.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+class SnapshotHistory {
+    static final int MIN_KEYFRAME_INTERVAL = 64;
+    /**
+     * Rough size of a record referenced by a delta
+     */
+    static final int RECORD_BYTES = 32;
+
+    private volatile int totalNumberOfAttributes;
+    private final int keyframeInterval;
+
+    /**
+     * Latest state, guarded by this
+     */
+    private SingleRecord<?>[] current;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean grown;
+
+    private volatile Segments segments = new Segments(new Segment[4], 0);
+
+    SnapshotHistory(int totalNumberOfAttributes) {
+        this(totalNumberOfAttributes, Math.max(MIN_KEYFRAME_INTERVAL, totalNumberOfAttributes));
+    }
+
+    SnapshotHistory(int totalNumberOfAttributes, int keyframeInterval) {
+        this.totalNumberOfAttributes = totalNumberOfAttributes;
+        this.keyframeInterval = keyframeInterval;
+        this.current = new SingleRecord<?>[totalNumberOfAttributes];
+    }
+
+    synchronized void add(SingleRecord<?> record) {
+        //history must be ordered by time, records of different attributes may come slightly out of order
+        long timestamp = lastTimestamp = Math.max(lastTimestamp, record.r_t);
+
+        Segments segments = this.segments;
+        Segment last = segments.last();
+        if (last == null || last.size == keyframeInterval || grown) {
+            last = new Segment(current.clone(), keyframeInterval);
+            this.segments = segments.append(last);
+            grown = false;
+        }
+
+        int ndx = last.size;
+        last.deltas[ndx] = record;
+        last.timestamps[ndx] = timestamp;
+        last.size = ndx + 1;
+
+        current[record.id] = record;
+    }
+
+    /**
+     * @param totalNumberOfAttributes new number of attributes
+     */
+    synchronized void grow(int totalNumberOfAttributes) {
+        if (totalNumberOfAttributes <= this.totalNumberOfAttributes) return;
+        this.current = Arrays.copyOf(current, totalNumberOfAttributes);
+        this.totalNumberOfAttributes = totalNumberOfAttributes;
+        this.grown = true;
+    }
+
+    /**
+     * @param t timestamp
+     * @return state of all attributes at t or null if there is no history
+     */
+    SingleRecord<?>[] getState(long t) {
+        Segments segments = this.segments;
+        if (segments.size == 0) return null;
+
+        Segment segment = segments.get(Math.max(0, segments.floor(t)));
+        SingleRecord<?>[] result = segment.keyframe.clone();
+        segment.apply(result, 0, segment.upperBound(t, segment.size));
+        return result;
+    }
+
+    /**
+     * @return a snapshot per each delta with timestamp in [t0, t1]
+     */
+    Iterable<Snapshot> getSnapshots(final long t0, final long t1) {
+        return new Iterable<Snapshot>() {
+            @Override
+            public Iterator<Snapshot> iterator() {
+                return new SnapshotsIterator(segments, t0, t1);
+            }
+        };
+    }
+
+    /**
+     * @return estimated size of the history including records referenced by deltas
+     */
+    long getMemoryUsage() {
+        long segment = (totalNumberOfAttributes + 2L * keyframeInterval) * 8 + (long) keyframeInterval * RECORD_BYTES;
+        return segments.size * segment;
+    }
+
+    /**
+     * Drops segments that contain only deltas older than timestamp
+     *
+     * @param timestamp
+     */
+    synchronized void clear(long timestamp) {
+        Segments segments = this.segments;
+        int drop = segments.floor(timestamp);
+        if (drop > 0) this.segments = segments.drop(drop);
+    }
+
+    synchronized void clear() {
+        this.segments = new Segments(new Segment[4], 0);
+        this.current = new SingleRecord<?>[totalNumberOfAttributes];
+        this.lastTimestamp = Long.MIN_VALUE;
+    }
+
+    private static final class Segment {
+        final SingleRecord<?>[] keyframe;
+        final SingleRecord<?>[] deltas;
+        final long[] timestamps;
+        volatile int size;
+
+        Segment(SingleRecord<?>[] keyframe, int capacity) {
+            this.keyframe = keyframe;
+            this.deltas = new SingleRecord<?>[capacity];
+            this.timestamps = new long[capacity];
+        }
+
+        long first() {
+            return timestamps[0];
+        }
+
+        void apply(SingleRecord<?>[] state, int from, int to) {
+            for (int i = from; i < to; ++i) {
+                state[deltas[i].id] = deltas[i];
+            }
+        }
+
+        /**
+         * @return index of the first delta with timestamp GT t
+         */
+        int upperBound(long t, int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] <= t) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Immutable view of the segments array. The array itself is shared between views and is only appended to.
+     */
+    private static final class Segments {
+        final Segment[] array;
+        final int size;
+
+        Segments(Segment[] array, int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        Segment get(int ndx) {
+            return array[ndx];
+        }
+
+        Segment last() {
+            return size == 0 ? null : array[size - 1];
+        }
+
+        Segments append(Segment segment) {
+            Segment[] array = size < this.array.length ? this.array : Arrays.copyOf(this.array, size * 2);
+            array[size] = segment;
+            return new Segments(array, size + 1);
+        }
+
+        Segments drop(int count) {
+            Segment[] array = new Segment[Math.max(4, this.array.length - count)];
+            System.arraycopy(this.array, count, array, 0, size - count);
+            return new Segments(array, size - count);
+        }
+
+        /**
+         * @return index of the last segment that starts at or before t, -1 if there is no such
+         */
+        int floor(long t) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (array[mid].first() <= t) low = mid + 1;
+                else high = mid;
+            }
+            return low - 1;
+        }
+    }
+
+    private static final class SnapshotsIterator implements Iterator<Snapshot> {
+        private final Segments segments;
+        private final long t1;
+        private SingleRecord<?>[] state;
+        private int segment;
+        private int size;
+        private int pos;
+
+        SnapshotsIterator(Segments segments, long t0, long t1) {
+            this.segments = segments;
+            this.t1 = t1;
+            if (segments.size == 0) return;
+
+            this.segment = Math.max(0, segments.floor(t0));
+            Segment first = segments.get(segment);
+            this.size = first.size;
+            this.state = first.keyframe.clone();
+            //skip deltas before t0 applying them to the state
+            for (; pos < size && first.timestamps[pos] < t0; ++pos) {
+                state[first.deltas[pos].id] = first.deltas[pos];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (state == null) return false;
+            if (pos == size) {
+                if (segment + 1 == segments.size) return false;
+                Segment next = segments.get(++segment);
+                if (next.keyframe.length > state.length) state = Arrays.copyOf(state, next.keyframe.length);
+                size = next.size;
+                pos = 0;
+            }
+            return pos < size && segments.get(segment).timestamps[pos] <= t1;
+        }
+
+        @Override
+        public Snapshot next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            SingleRecord<?> delta = segments.get(segment).deltas[pos++];
+            state[delta.id] = delta;
+            return new Snapshot(state);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package wpn.hdri.ss.engine2;
+
+/**
+ * Effective polling delay of a single attribute.
+ * <p/>
+ * The attribute is read on every n-th tick of its group. n doubles after {@link #idleReads} reads with the same
+ * w_t, but never exceeds max delay, and drops back to 1 as soon as the value changes. Accessed by a single
+ * {@link PollTask} run at a time, getters may be called from any thread.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class AdaptiveDelay {
+    public static final int DEFAULT_IDLE_READS = 10;
+
+    private final long delay;
+    private final int maxMultiplier;
+    private final int idleReads;
+
+    private volatile int multiplier = 1;
+    private int countdown;
+    private int unchanged;
+    private long lastWriteTime = Long.MIN_VALUE;
+
+    /**
+     * @param delay configured delay, ms
+     * @param maxDelay ms
+     * @param idleReads
+     */
+    public AdaptiveDelay(long delay, long maxDelay, int idleReads) {
+        this.delay = Math.max(1L, delay);
+        this.maxMultiplier = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, maxDelay / this.delay));
+        this.idleReads = idleReads > 0 ? idleReads : DEFAULT_IDLE_READS;
+    }
+
+    /**
+     * Called on every tick of the group
+     *
+     * @return true if attribute must be read on this tick
+     */
+    boolean isDue() {
+        if (--countdown > 0) return false;
+        countdown = multiplier;
+        return true;
+    }
+
+    /**
+     * @param w_t write timestamp of the record just read
+     */
+    void onRead(long w_t) {
+        if (w_t != lastWriteTime) {
+            lastWriteTime = w_t;
+            unchanged = 0;
+            if (multiplier != 1) {
+                multiplier = 1;
+                countdown = 1;
+            }
+            return;
+        }
+        if (++unchanged < idleReads) return;
+        unchanged = 0;
+        multiplier = (int) Math.min(maxMultiplier, 2L * multiplier);
+    }
+
+    /**
+     * @return ms
+     */
+    public long getDelay() {
+        return delay * multiplier;
+    }
+}
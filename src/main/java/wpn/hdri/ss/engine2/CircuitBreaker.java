@@ -0,0 +1,133 @@
+package wpn.hdri.ss.engine2;
+
+import com.google.common.base.MoreObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops polling of a device that keeps failing.
+ * <p/>
+ * After {@link #FAILURE_THRESHOLD} failed requests in a row the breaker opens and no request is made. The shared
+ * scheduler half-opens it after a backoff, then a single probe request is let through: success closes the breaker,
+ * failure opens it again with the backoff doubled up to {@link #MAX_BACKOFF}.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public static final int FAILURE_THRESHOLD = 3;
+    public static final long INITIAL_BACKOFF = 1000L;
+    public static final long MAX_BACKOFF = 60000L;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile State state = State.CLOSED;
+    //guarded by this
+    private int failures;
+    private long backoff = INITIAL_BACKOFF;
+    private boolean probing;
+    private volatile long opened;
+
+    public CircuitBreaker(String name, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return true if request may be made, in half open state only the first caller gets true
+     */
+    public boolean allowRequest() {
+        State state = this.state;
+        if (state == State.CLOSED) return true;
+        if (state == State.OPEN) return false;
+        synchronized (this) {
+            if (this.state != State.HALF_OPEN || probing) return this.state == State.CLOSED;
+            probing = true;
+            return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        failures = 0;
+        if (state == State.CLOSED) return;
+        logger.info("{} is back, closing circuit breaker", name);
+        backoff = INITIAL_BACKOFF;
+        probing = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Request allowed by {@link #allowRequest()} has not been made, lets another caller probe
+     */
+    public synchronized void onSkipped() {
+        probing = false;
+    }
+
+    public synchronized void onFailure() {
+        switch (state) {
+            case CLOSED:
+                if (++failures >= FAILURE_THRESHOLD) open();
+                break;
+            case HALF_OPEN:
+                backoff = Math.min(MAX_BACKOFF, 2 * backoff);
+                open();
+                break;
+        }
+    }
+
+    private void open() {
+        logger.warn("{} keeps failing, next attempt in {} ms", name, backoff);
+        state = State.OPEN;
+        probing = false;
+        opened++;
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                halfOpen();
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void halfOpen() {
+        if (state == State.OPEN) state = State.HALF_OPEN;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of times this breaker has opened
+     */
+    public long getOpened() {
+        return opened;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("state", state)
+                .add("failures", failures)
+                .add("backoffMs", backoff)
+                .add("opened", opened)
+                .toString();
+    }
+}
@@ -1,32 +1,98 @@
 package wpn.hdri.ss.engine2;
 
 import wpn.hdri.ss.data2.AllRecords;
+import wpn.hdri.ss.data2.MappedStorage;
 import wpn.hdri.ss.data2.SingleRecord;
 import wpn.hdri.ss.data2.Snapshot;
 
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
+ * Writers share the read lock, so they still write different columns simultaneously,
+ * {@link #grow(int)} takes the write lock
+ *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 09.11.2015
  */
 public class DataStorage {
-    private final int totalNumberOfAttributes;
+    private volatile int totalNumberOfAttributes;
 
     private final Snapshot snapshot;
     private final AllRecords allRecords;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DataStorage(int totalNumberOfAttributes) {
+        this(totalNumberOfAttributes, null);
+    }
+
+    /**
+     * @param mappedStorage off-heap storage for all records or null
+     */
+    public DataStorage(int totalNumberOfAttributes, MappedStorage mappedStorage) {
+        this(totalNumberOfAttributes, mappedStorage, false);
+    }
+
+    /**
+     * @param mappedStorage off-heap storage for all records or null
+     * @param compressArrays see {@link AllRecords#AllRecords(int, MappedStorage, boolean)}
+     */
+    public DataStorage(int totalNumberOfAttributes, MappedStorage mappedStorage, boolean compressArrays) {
         this.totalNumberOfAttributes = totalNumberOfAttributes;
         this.snapshot = new Snapshot(totalNumberOfAttributes);
-        this.allRecords = new AllRecords(totalNumberOfAttributes);
+        this.allRecords = new AllRecords(totalNumberOfAttributes, mappedStorage, compressArrays);
     }
 
     public void writeRecord(SingleRecord<?> record){
-        snapshot.update(record);
+        lock.readLock().lock();
+        try {
+            snapshot.update(record);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public void appendRecord(SingleRecord<?> record){
-        snapshot.update(record);
-        allRecords.add(record);
+        lock.readLock().lock();
+        try {
+            snapshot.update(record);
+            allRecords.add(record);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the latest record of the attribute from the snapshot, collected records are kept
+     */
+    public void clearRecord(int id){
+        lock.readLock().lock();
+        try {
+            snapshot.clear(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes room for attributes added at runtime, waits for the records being written
+     *
+     * @param totalNumberOfAttributes new number of attributes
+     */
+    public void grow(int totalNumberOfAttributes) {
+        lock.writeLock().lock();
+        try {
+            if (totalNumberOfAttributes <= this.totalNumberOfAttributes) return;
+            snapshot.grow(totalNumberOfAttributes);
+            allRecords.grow(totalNumberOfAttributes);
+            this.totalNumberOfAttributes = totalNumberOfAttributes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return totalNumberOfAttributes;
     }
 
     public Snapshot getSnapshot(){
@@ -2,68 +2,223 @@ package wpn.hdri.ss.engine2;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import wpn.hdri.ss.client.Client;
+import wpn.hdri.ss.client2.ClientAdaptor;
 import wpn.hdri.ss.data2.Attribute;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Attributes may be added, removed or changed while the engine is running, see {@link #addAttribute(Attribute, boolean)}
+ *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 10.11.2015
  */
 public class Engine {
     private final static Logger logger = LoggerFactory.getLogger(Engine.class);
 
+    /**
+     * How long a rescheduled polling task may finish its current read, ms
+     */
+    public static final long CANCEL_TIMEOUT = 10000L;
+
     public final ScheduledExecutorService exec;
+    /**
+     * Runs reads, exec is used if null, see {@link EngineMode}
+     */
+    private final ExecutorService workers;
+    /**
+     * Fires polling ticks, attributes with the same delay share a tick
+     */
+    private final TimerWheel wheel = new TimerWheel();
+    /**
+     * Wheel task name -> task
+     */
+    private final Map<String, PollTask> pollTasks = new ConcurrentHashMap<>();
+    /**
+     * (client, delay) -> wheel task name
+     */
+    private final Map<List<Object>, String> groupNames = new ConcurrentHashMap<>();
+    /**
+     * Effective delays of the polled attributes, see {@link AdaptiveDelay}
+     */
+    private final Map<String, AdaptiveDelay> delays = new ConcurrentHashMap<>();
+    private volatile long adaptiveMaxDelay;
+    private volatile int adaptiveIdleReads;
+    private volatile OverloadPolicy overloadPolicy = OverloadPolicy.SKIP;
+    private volatile boolean asyncReads;
+    /**
+     * One per device, reopened by exec
+     */
+    private final Map<ClientAdaptor, CircuitBreaker> breakers = Collections.synchronizedMap(new LinkedHashMap<ClientAdaptor, CircuitBreaker>());
 
     private final DataStorage storage;
 
-    private final Map<String, Attribute<?>> attributesByName = new HashMap<>();
+    private final Map<String, Attribute<?>> attributesByName = new ConcurrentHashMap<>();
 
     private final List<Attribute> polledAttributes;
     private final List<Attribute> eventDrivenAttributes;
 
-    private final Map<String, ScheduledFuture<?>> runningTasks = new HashMap<>();
-    private ScheduledFuture<?> maintenance;
-    private long maintenanceDelay = 30L;
+    //guarded by this
+    private boolean started;
+    private boolean append;
+    private long fixedDelay = -1;
+    private Executor readers;
+
+    private final EvictionTask eviction;
+    /**
+     * Events are written to storage by its threads
+     */
+    private final EventQueue events;
+    private ScheduledFuture<?> evictionFuture;
 
     public Engine(ScheduledExecutorService exec, DataStorage storage,
                   List<Attribute> polledAttributes, List<Attribute> eventDrivenAttributes) {
+        this(exec, null, storage, polledAttributes, eventDrivenAttributes, new EvictionTask(storage), new EventQueue(storage));
+    }
+
+    public Engine(ScheduledExecutorService exec, ExecutorService workers, DataStorage storage,
+                  List<Attribute> polledAttributes, List<Attribute> eventDrivenAttributes, EvictionTask eviction,
+                  EventQueue events) {
         this.exec = exec;
+        this.events = events;
+        this.workers = workers;
         this.storage = storage;
-        this.polledAttributes = polledAttributes;
+        this.eviction = eviction;
+        this.polledAttributes = new CopyOnWriteArrayList<>(polledAttributes);
         for (Attribute<?> attr : polledAttributes) {
             attributesByName.put(attr.fullName, attr);
+            addBreaker(attr);
         }
-        this.eventDrivenAttributes = eventDrivenAttributes;
+        this.eventDrivenAttributes = new CopyOnWriteArrayList<>(eventDrivenAttributes);
         for(Attribute<?> attr : eventDrivenAttributes){
             attributesByName.put(attr.fullName, attr);
         }
     }
 
-    private void start(boolean append, long delay){
-        for(Attribute attr : polledAttributes){
-            logger.debug("Scheduling polling task for {}", attr.fullName);
-            PollTask task = new PollTask(attr, storage, append);
-            runningTasks.put(attr.fullName,
-                    exec.scheduleWithFixedDelay(
-                            task, 0L, delay == -1 ? attr.delay : delay, TimeUnit.MILLISECONDS));
+    private void addBreaker(Attribute<?> attr) {
+        synchronized (breakers) {
+            if (attr.devClient != null && !breakers.containsKey(attr.devClient))
+                breakers.put(attr.devClient, new CircuitBreaker(
+                        attr.devClient instanceof Client ? ((Client) attr.devClient).getDeviceName() : attr.fullName, exec));
+        }
+    }
 
-            CompletableFuture.runAsync(task);
+    private synchronized void start(boolean append, long delay){
+        this.readers = workers == null ? exec : workers;
+        this.append = append;
+        this.fixedDelay = delay;
+        delays.clear();
+        for (Map.Entry<List<Object>, List<Attribute<?>>> group : groupPolledAttributes(delay).entrySet()) {
+            schedule(group.getKey(), group.getValue());
         }
         for (Attribute attr : eventDrivenAttributes) {
-            logger.debug("Subscribing to {}", attr.fullName);
-            attr.devClient.subscribe(new EventTask(attr, storage, append));
+            subscribe(attr);
         }
-        this.maintenance = exec.scheduleAtFixedRate(new MaintenanceTask(), maintenanceDelay, maintenanceDelay, TimeUnit.SECONDS);
+        this.evictionFuture = exec.scheduleWithFixedDelay(eviction, EvictionTask.PERIOD, EvictionTask.PERIOD, TimeUnit.MILLISECONDS);
+        this.started = true;
     }
 
+    /**
+     * Adaptive delays of the attributes that are already polled are kept
+     *
+     * @param key (client, delay)
+     * @param attrs not empty
+     */
+    private void schedule(List<Object> key, List<Attribute<?>> attrs) {
+        String name = attrs.size() == 1 ? attrs.get(0).fullName : attrs.get(0).fullName + " +" + (attrs.size() - 1);
+        logger.debug("Scheduling polling task for {}", name);
+        long period = (Long) key.get(1);
+        List<AdaptiveDelay> groupDelays = new ArrayList<>(attrs.size());
+        for (Attribute<?> attr : attrs) {
+            AdaptiveDelay adaptiveDelay = delays.get(attr.fullName);
+            if (adaptiveDelay == null)
+                delays.put(attr.fullName, adaptiveDelay = new AdaptiveDelay(period, adaptiveMaxDelay, adaptiveIdleReads));
+            groupDelays.add(adaptiveDelay);
+        }
+        PollTask task = new PollTask(attrs, adaptiveMaxDelay > period ? groupDelays : null, period,
+                breakers.get(attrs.get(0).devClient), storage, events, append);
+        //overdue ticks are skipped while the previous read is still running
+        wheel.add(name, period, asyncReads ? task.dispatchAsync(overloadPolicy) : task.dispatchTo(readers, overloadPolicy));
+        pollTasks.put(name, task);
+        groupNames.put(key, name);
+    }
+
+    /**
+     * Replaces the polling task of the group, so its attributes keep a single writer
+     *
+     * @param key (client, delay)
+     */
+    private void reschedule(List<Object> key) {
+        String name = groupNames.remove(key);
+        if (name != null) unschedule(name);
+        List<Attribute<?>> attrs = groupPolledAttributes(fixedDelay).get(key);
+        if (attrs != null) schedule(key, attrs);
+    }
+
+    private void unschedule(String name) {
+        logger.debug("Canceling polling task for {}", name);
+        wheel.remove(name);
+        PollTask task = pollTasks.remove(name);
+        if (task == null) return;
+        if (!task.cancel(CANCEL_TIMEOUT))
+            logger.warn("Polling task for {} has not finished within {} ms", name, CANCEL_TIMEOUT);
+        if (!task.isDegraded()) return;
+        for (Attribute<?> attr : task.getAttributes()) {
+            unsubscribe(attr);
+        }
+    }
+
+    private void subscribe(Attribute<?> attr) {
+        logger.debug("Subscribing to {}", attr.fullName);
+        attr.devClient.subscribe(new EventTask(attr, storage, events, append));
+    }
+
+    /**
+     * Waits until pending events of the attribute are written
+     */
+    private void unsubscribe(Attribute<?> attr) {
+        logger.debug("Unsubscribing from {}", attr.fullName);
+        attr.devClient.unsubscribe(attr);
+        if (!events.awaitDrained(CANCEL_TIMEOUT))
+            logger.warn("Events of {} have not been written within {} ms", attr.fullName, CANCEL_TIMEOUT);
+    }
+
+    private List<Object> groupKey(Attribute<?> attr) {
+        return Arrays.<Object>asList(attr.devClient, fixedDelay == -1 ? attr.delay : fixedDelay);
+    }
+
+
+    /**
+     * Attributes of the same device that are polled with the same delay are read by a single request
+     *
+     * @param delay -1 to use attribute's delay
+     * @return (client, delay) -> attributes
+     */
+    private Map<List<Object>, List<Attribute<?>>> groupPolledAttributes(long delay) {
+        Map<List<Object>, List<Attribute<?>>> result = new LinkedHashMap<>();
+        for (Attribute<?> attr : polledAttributes) {
+            List<Object> key = Arrays.<Object>asList(attr.devClient, delay == -1 ? attr.delay : delay);
+            List<Attribute<?>> group = result.get(key);
+            if (group == null) result.put(key, group = new ArrayList<>());
+            group.add(attr);
+        }
+        return result;
+    }
 
     public void start() {
         logger.debug("Starting...");
@@ -71,20 +226,32 @@ public class Engine {
         logger.debug("Done!");
     }
 
-    public void stop() {
+    public synchronized void stop() {
         logger.debug("Stopping...");
-        for (Map.Entry<String, ScheduledFuture<?>> task : runningTasks.entrySet()) {
-            logger.debug("Canceling polling task for {}", task.getKey());
-            task.getValue().cancel(false);
+        started = false;
+        groupNames.clear();
+        for (String name : new ArrayList<>(pollTasks.keySet())) {
+            unschedule(name);
         }
         for (Attribute attr : eventDrivenAttributes) {
-            logger.debug("Unsubscribing from {}", attr.fullName);
-            attr.devClient.unsubscribe(attr);
+            unsubscribe(attr);
         }
-        this.maintenance.cancel(true);
+        this.evictionFuture.cancel(false);
         logger.info("Stopped!");
     }
 
+    /**
+     * Stops the engine and releases its threads, a closed engine can not be started again
+     */
+    public synchronized void close() {
+        if (started) stop();
+        wheel.stop();
+        events.close();
+        exec.shutdownNow();
+        if (workers != null) workers.shutdownNow();
+        logger.info("Closed!");
+    }
+
     public void startLightPolling() {
         logger.debug("Starting light polling...");
         start(false, -1);
@@ -98,8 +265,154 @@ public class Engine {
         logger.debug("Done!");
     }
 
-    public long getMaintenanceDelay() {
-        return this.maintenanceDelay;
+    /**
+     * @return id for a new attribute, storage grows to fit it
+     */
+    public synchronized int nextId() {
+        int id = storage.size();
+        storage.grow(id + 1);
+        return id;
+    }
+
+    /**
+     * Starts collecting a new attribute, if the engine is running the attribute is polled or subscribed right away.
+     * Other polled attributes of its group are rescheduled together with it, other attributes are not affected.
+     *
+     * @param attr its id must come from {@link #nextId()} or from the attribute it replaces
+     * @param polled false to subscribe to events
+     * @throws IllegalArgumentException if attribute with the same name is already collected
+     */
+    public synchronized void addAttribute(Attribute<?> attr, boolean polled) {
+        if (attr.id >= storage.size()) throw new IllegalArgumentException("Attribute id is out of storage: " + attr.id);
+        if (attributesByName.containsKey(attr.fullName))
+            throw new IllegalArgumentException("Attribute already exists: " + attr.fullName);
+        attributesByName.put(attr.fullName, attr);
+        if (polled) {
+            addBreaker(attr);
+            polledAttributes.add(attr);
+            if (started) reschedule(groupKey(attr));
+        } else {
+            eventDrivenAttributes.add(attr);
+            if (started) subscribe(attr);
+        }
+        logger.info("Added attribute {}", attr.fullName);
+    }
+
+    /**
+     * Stops collecting the attribute, its collected records are kept
+     *
+     * @return removed attribute
+     * @throws IllegalArgumentException if there is no such attribute
+     */
+    public synchronized Attribute<?> removeAttribute(String name) {
+        Attribute<?> attr = remove(name);
+        storage.clearRecord(attr.id);
+        logger.info("Removed attribute {}", attr.fullName);
+        return attr;
+    }
+
+    /**
+     * Replaces the attribute with the same name, e.g. to change its delay or method.
+     * The new attribute keeps writing to the same column, so the collected records are kept
+     *
+     * @param attr must have the same id as the replaced attribute
+     * @throws IllegalArgumentException if there is no such attribute or its id differs
+     */
+    public synchronized void changeAttribute(Attribute<?> attr, boolean polled) {
+        if (getAttributeByName(attr.fullName).id != attr.id)
+            throw new IllegalArgumentException("Attribute id can not be changed: " + attr.fullName);
+        remove(attr.fullName);
+        addAttribute(attr, polled);
+    }
+
+    private Attribute<?> remove(String name) {
+        Attribute<?> attr = getAttributeByName(name);
+        if (polledAttributes.remove(attr)) {
+            delays.remove(attr.fullName);
+            if (started) reschedule(groupKey(attr));
+        } else if (eventDrivenAttributes.remove(attr) && started) {
+            unsubscribe(attr);
+        }
+        attributesByName.remove(name);
+        return attr;
+    }
+
+    /**
+     * Polled attributes that do not change are read less often, but at least every maxDelay ms.
+     * Takes effect on the next start
+     *
+     * @param maxDelay ms, 0 - turns adaptive polling off
+     * @param idleReads number of reads without a change before polling slows down, 0 - default
+     */
+    public void setAdaptivePolling(long maxDelay, int idleReads) {
+        if (maxDelay < 0) throw new IllegalArgumentException("maxDelay must be positive!");
+        this.adaptiveMaxDelay = maxDelay;
+        this.adaptiveIdleReads = idleReads;
+    }
+
+    /**
+     * Takes effect on the next start
+     */
+    public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * Polls by non blocking reads, see {@link EngineMode#ASYNC}. Takes effect on the next start
+     */
+    public void setAsyncReads(boolean asyncReads) {
+        this.asyncReads = asyncReads;
+    }
+
+    /**
+     * @return circuit breakers of the polled devices
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        synchronized (breakers) {
+            return new ArrayList<>(breakers.values());
+        }
+    }
+
+    /**
+     * @return polling task name -> its latency statistics
+     */
+    public Map<String, PollStats> getPollStats() {
+        Map<String, PollStats> result = new TreeMap<>();
+        for (Map.Entry<String, PollTask> task : pollTasks.entrySet()) {
+            result.put(task.getKey(), task.getValue().getStats());
+        }
+        return result;
+    }
+
+    /**
+     * @return attribute full name -> current polling delay, ms
+     */
+    public Map<String, Long> getEffectiveDelays() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Attribute<?> attr : polledAttributes) {
+            AdaptiveDelay delay = delays.get(attr.fullName);
+            result.put(attr.fullName, delay == null ? attr.delay : delay.getDelay());
+        }
+        return result;
+    }
+
+    /**
+     * @return polling groups, see {@link TimerWheel#getSchedule()}
+     */
+    public List<String> getSchedule() {
+        return wheel.getSchedule();
+    }
+
+    public EventQueue getEvents() {
+        return events;
+    }
+
+    public EvictionTask getEviction() {
+        return eviction;
     }
 
     public DataStorage getStorage() {
@@ -122,21 +435,5 @@ public class Engine {
         return attributesByName.values();
     }
 
-    //TODO thread safety?
-    public void setMaintenanceDelay(long newDelay) {
-        this.maintenanceDelay = newDelay;
-    }
     //TODO erase data
-
-    private class MaintenanceTask implements Runnable {
-        private long lastTimestamp = System.currentTimeMillis();
-
-        @Override
-        public void run() {
-            long timestamp = this.lastTimestamp;
-            Engine.this.storage.getAllRecords().clear(timestamp);
-
-            this.lastTimestamp = System.currentTimeMillis();
-        }
-    }
 }
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import wpn.hdri.ss.client.Client;
 import wpn.hdri.ss.client.ClientException;
 import wpn.hdri.ss.client.ClientFactory;
+import wpn.hdri.ss.client.TangoClient;
 import wpn.hdri.ss.client2.ClientAdaptor;
 import wpn.hdri.ss.configuration.Device;
 import wpn.hdri.ss.configuration.DeviceAttribute;
@@ -12,11 +13,30 @@ import wpn.hdri.ss.configuration.StatusServerConfiguration;
 import wpn.hdri.ss.data.Method;
 import wpn.hdri.ss.data2.Attribute;
 import wpn.hdri.ss.data2.Interpolation;
+import wpn.hdri.ss.data2.MappedStorage;
+import wpn.hdri.ss.data2.RecordType;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
@@ -25,13 +45,30 @@ import java.util.concurrent.ScheduledExecutorService;
 public class EngineFactory {
     private static final Logger logger = LoggerFactory.getLogger(EngineFactory.class);
 
+    private final String instanceName;
     private final int totalNumberOfAttributes;
     private final StatusServerConfiguration configuration;
 
     private final List<Attribute<?>> selfAttributes;
     private final List<String> failedAttributes = new ArrayList<>();
 
-    public EngineFactory(List<Attribute<?>> selfAttributes, StatusServerConfiguration configuration) {
+    /**
+     * Registry of clients, includes devices added at runtime
+     */
+    private final ClientFactory clientFactory;
+
+    /**
+     * @param instanceName Tango instance name of this server, separates storages of several instances
+     */
+    public EngineFactory(String instanceName, List<Attribute<?>> selfAttributes, StatusServerConfiguration configuration) {
+        this(instanceName, selfAttributes, configuration,
+                new ClientFactory(configuration.getMaxRequestsPerHost(), configuration.getMaxRequestsPerDevice(),
+                        configuration.getClientIdleTimeout()));
+    }
+
+    EngineFactory(String instanceName, List<Attribute<?>> selfAttributes, StatusServerConfiguration configuration,
+                  ClientFactory clientFactory) {
+        this.instanceName = instanceName;
         this.selfAttributes = selfAttributes;
         int totalNumberOfAttributes = 0;
         totalNumberOfAttributes += configuration.getStatusServerAttributes().size();
@@ -40,6 +77,7 @@ public class EngineFactory {
         }
         this.totalNumberOfAttributes = totalNumberOfAttributes;
         this.configuration = configuration;
+        this.clientFactory = clientFactory;
     }
 
     public Engine newEngine(){
@@ -50,34 +88,31 @@ public class EngineFactory {
         List<Attribute> attributes = new ArrayList<>();
         List<Attribute> polledAttributes = new ArrayList<>();
         List<Attribute> eventDrivenAttributes = new ArrayList<>();
+        Map<Attribute<?>, Long> quotas = new HashMap<>();
 
         attributes.addAll(selfAttributes);
 
-        ClientFactory clientFactory = new ClientFactory();
+        Map<Device, Client> clients = new LinkedHashMap<>();
         for(Device dev : configuration.getDevices()){
-            Client client = clientFactory.createClient(dev.getUrl());
-
-            for(DeviceAttribute devAttr : dev.getAttributes()){
-                Class<?> type = null;
-                try {
-                    type = client.getAttributeClass(devAttr.getName());
-                } catch (ClientException e) {
-                    logger.warn(e.getMessage(), e);
-                    failedAttributes.add(dev.getUrl() + "/" + devAttr.getName());
-                    continue;
-                }
+            clients.put(dev, clientFactory.getClient(dev.getUrl()));
+        }
+        clientFactory.connectAll(new LinkedHashSet<>(clients.values()), configuration.getDiscoveryThreads(), configuration.getDiscoveryTimeout());
+        Map<DeviceAttribute, Class<?>> types = discoverTypes(clients);
 
-                Method.EventType eventType = Method.EventType.valueOf(devAttr.getEventType().toUpperCase());
+        for(Map.Entry<Device, Client> entry : clients.entrySet()){
+            Client client = entry.getValue();
 
-                Interpolation interpolation = Interpolation.valueOf(devAttr.getInterpolation().toUpperCase());
+            for(DeviceAttribute devAttr : entry.getKey().getAttributes()){
+                Class<?> type = types.get(devAttr);
+                //failed attributes have been already reported
+                if (type == null) continue;
 
-                Attribute<?> attr = new Attribute<>(
-                        actualNumberOfAttributes++, (ClientAdaptor) client, devAttr.getDelay(),
-                        eventType, type, devAttr.getAlias(), client.getDeviceName() + "/" + devAttr.getName(), devAttr.getName(), interpolation);
+                Attribute<?> attr = newAttribute(actualNumberOfAttributes++, client, devAttr, type);
                 logger.debug("Monitoring attribute {}", attr.fullName);
                 logger.debug(attr.toString());
 
                 attributes.add(attr);
+                if (devAttr.getQuota() > 0) quotas.put(attr, devAttr.getQuota() * 1024);
 
                 if(devAttr.getMethod() == Method.POLL){
                     polledAttributes.add(attr);
@@ -90,10 +125,250 @@ public class EngineFactory {
 
         if(actualNumberOfAttributes != totalNumberOfAttributes) logger.warn("Actual number of monitored attributes[{}] LT total number [{}]", actualNumberOfAttributes, totalNumberOfAttributes);
 
-        ScheduledExecutorService exec = Executors.newScheduledThreadPool(actualNumberOfAttributes - selfAttributes.size());
-        DataStorage storage = new DataStorage(actualNumberOfAttributes);
+        EngineMode mode = EngineMode.valueOf(configuration.getEngine().toUpperCase());
+        logger.info("Engine mode: {}", mode);
+        Set<List<Object>> pollingGroups = new HashSet<>();
+        for (Attribute<?> attr : polledAttributes) {
+            pollingGroups.add(Arrays.<Object>asList(attr.devClient, attr.delay));
+        }
+        ScheduledExecutorService exec = mode.newTimer(pollingGroups.size());
+        ExecutorService workers = mode.newWorkers();
+        DataStorage storage = new DataStorage(actualNumberOfAttributes, newMappedStorage(), configuration.isArrayCompression());
+        for (Map.Entry<Attribute<?>, Long> quota : quotas.entrySet()) {
+            storage.getAllRecords().setQuota(quota.getKey(), quota.getValue());
+        }
+
+        Engine engine = new Engine(exec, workers, storage, polledAttributes, eventDrivenAttributes, newEviction(storage), newEventQueue(storage));
+        engine.setAdaptivePolling(configuration.getAdaptiveMaxDelay(), configuration.getAdaptiveIdleReads());
+        engine.setOverloadPolicy(OverloadPolicy.valueOf(configuration.getOverloadPolicy().toUpperCase()));
+        engine.setAsyncReads(mode == EngineMode.ASYNC);
+        //process wide JTango setting, other modes keep the default
+        if (mode == EngineMode.ASYNC) TangoClient.enablePushCallbacks();
+        return engine;
+    }
+
+    private static Attribute<?> newAttribute(int id, Client client, DeviceAttribute devAttr, Class<?> type) {
+        Method.EventType eventType = Method.EventType.valueOf(devAttr.getEventType().toUpperCase());
+
+        Interpolation interpolation = Interpolation.valueOf(devAttr.getInterpolation().toUpperCase());
+
+        return new Attribute<>(
+                id, (ClientAdaptor) client, devAttr.getDelay(),
+                eventType, type, devAttr.getAlias(), client.getDeviceName() + "/" + devAttr.getName(), devAttr.getName(), interpolation,
+                RecordType.forClass(type));
+    }
+
+    /**
+     * Adds an attribute to the running engine, its type is queried from the device
+     *
+     * @param engine created by this factory
+     * @return added attribute
+     * @throws ClientException if the type can not be queried
+     * @throws IllegalArgumentException if attribute is already collected
+     */
+    public Attribute<?> addAttribute(Engine engine, String deviceUrl, DeviceAttribute devAttr) throws ClientException {
+        devAttr.validate();
+        Client client = clientFactory.getClient(deviceUrl);
+        Class<?> type = client.getAttributeClass(devAttr.getName());
+        Attribute<?> attr = newAttribute(engine.nextId(), client, devAttr, type);
+        if (devAttr.getQuota() > 0) engine.getStorage().getAllRecords().setQuota(attr, devAttr.getQuota() * 1024);
+        engine.addAttribute(attr, devAttr.getMethod() == Method.POLL);
+        return attr;
+    }
+
+    /**
+     * Changes delay, method, interpolation etc of a collected attribute, its type and collected records are kept
+     *
+     * @param engine created by this factory
+     * @return new attribute
+     * @throws IllegalArgumentException if attribute is not collected
+     */
+    public Attribute<?> changeAttribute(Engine engine, String deviceUrl, DeviceAttribute devAttr) {
+        devAttr.validate();
+        Client client = clientFactory.getClient(deviceUrl);
+        Attribute<?> old = engine.getAttributeByName(client.getDeviceName() + "/" + devAttr.getName());
+        Attribute<?> attr = newAttribute(old.id, client, devAttr, old.type);
+        engine.getStorage().getAllRecords().setQuota(attr, devAttr.getQuota() * 1024);
+        engine.changeAttribute(attr, devAttr.getMethod() == Method.POLL);
+        return attr;
+    }
+
+    private EvictionTask newEviction(DataStorage storage) {
+        long retention = configuration.getRetention() > 0 ? configuration.getRetention() : EvictionTask.DEFAULT_RETENTION;
+        long memoryBudget = configuration.getMemoryBudget() > 0 ? configuration.getMemoryBudget() * 1024 * 1024 : EvictionTask.UNLIMITED;
+        return new EvictionTask(storage, retention, memoryBudget);
+    }
+
+    /**
+     * Queries attribute types of all devices in parallel, at most discovery-threads at once. Attributes that have
+     * failed or have not been discovered within discovery-timeout are added to failed attributes.
+     * <p/>
+     * Types found in the metadata cache are used right away and revalidated in background, a changed type is
+     * stored in the cache and takes effect on the next start
+     *
+     * @return attribute -> type
+     */
+    private Map<DeviceAttribute, Class<?>> discoverTypes(Map<Device, Client> clients) {
+        Map<DeviceAttribute, Class<?>> result = new IdentityHashMap<>();
+        final MetadataCache cache = newMetadataCache();
+
+        Map<DeviceAttribute, Client> unknown = new IdentityHashMap<>();
+        final Map<DeviceAttribute, Client> cached = new IdentityHashMap<>();
+        for (Map.Entry<Device, Client> entry : clients.entrySet()) {
+            for (DeviceAttribute devAttr : entry.getKey().getAttributes()) {
+                Class<?> type = cache == null ? null : cache.get(entry.getKey().getUrl(), devAttr.getName());
+                if (type == null) {
+                    unknown.put(devAttr, entry.getValue());
+                } else {
+                    result.put(devAttr, type);
+                    cached.put(devAttr, entry.getValue());
+                }
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            ExecutorService exec = Executors.newFixedThreadPool(Math.min(configuration.getDiscoveryThreads(), unknown.size()));
+            try {
+                discoverTypes(clients, unknown, exec, result);
+            } finally {
+                exec.shutdownNow();
+            }
+            if (cache != null) {
+                for (Map.Entry<Device, Client> entry : clients.entrySet()) {
+                    for (DeviceAttribute devAttr : entry.getKey().getAttributes()) {
+                        if (unknown.containsKey(devAttr) && result.containsKey(devAttr))
+                            cache.put(entry.getKey().getUrl(), devAttr.getName(), result.get(devAttr));
+                    }
+                }
+                cache.save();
+            }
+        }
+
+        if (!cached.isEmpty()) {
+            logger.info("Types of {} attributes are taken from the metadata cache, revalidating in background", cached.size());
+            revalidate(clients, cached, result, cache);
+        }
+        return result;
+    }
+
+    private void discoverTypes(Map<Device, Client> clients, Map<DeviceAttribute, Client> unknown, ExecutorService exec,
+                               Map<DeviceAttribute, Class<?>> result) {
+        final long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(configuration.getDiscoveryTimeout());
+        Map<Device, AtomicLong> finished = new LinkedHashMap<>();
+        Map<DeviceAttribute, Future<Class<?>>> futures = new IdentityHashMap<>();
+        for (Device dev : clients.keySet()) {
+            final AtomicLong deviceFinished = new AtomicLong(start);
+            finished.put(dev, deviceFinished);
+            for (final DeviceAttribute devAttr : dev.getAttributes()) {
+                final Client client = unknown.get(devAttr);
+                if (client == null) continue;
+                futures.put(devAttr, exec.submit(new Callable<Class<?>>() {
+                    @Override
+                    public Class<?> call() throws Exception {
+                        try {
+                            return client.getAttributeClass(devAttr.getName());
+                        } finally {
+                            deviceFinished.accumulateAndGet(System.nanoTime(), Math::max);
+                        }
+                    }
+                }));
+            }
+        }
+
+        for (Device dev : clients.keySet()) {
+            int discovered = 0;
+            int total = 0;
+            for (DeviceAttribute devAttr : dev.getAttributes()) {
+                Future<Class<?>> future = futures.get(devAttr);
+                if (future == null) continue;
+                total++;
+                try {
+                    result.put(devAttr, future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                    discovered++;
+                    continue;
+                } catch (ExecutionException e) {
+                    logger.warn(e.getCause().getMessage(), e.getCause());
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    logger.warn("Discovery of {}/{} has timed out", dev.getUrl(), devAttr.getName());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.cancel(true);
+                }
+                failedAttributes.add(dev.getUrl() + "/" + devAttr.getName());
+            }
+            if (total > 0)
+                logger.info("Discovered {} of {} attributes of {} in {} ms", discovered, total,
+                        dev.getUrl(), TimeUnit.NANOSECONDS.toMillis(finished.get(dev).get() - start));
+        }
+        logger.info("Discovery has taken {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void revalidate(Map<Device, Client> clients, Map<DeviceAttribute, Client> cached,
+                            final Map<DeviceAttribute, Class<?>> types, final MetadataCache cache) {
+        ExecutorService exec = Executors.newFixedThreadPool(Math.min(configuration.getDiscoveryThreads(), cached.size()),
+                new NamedThreadFactory("metadata-revalidation"));
+        final AtomicInteger remaining = new AtomicInteger(cached.size());
+        for (final Device dev : clients.keySet()) {
+            for (final DeviceAttribute devAttr : dev.getAttributes()) {
+                final Client client = cached.get(devAttr);
+                if (client == null) continue;
+                final Class<?> type = types.get(devAttr);
+                exec.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Class<?> actual = client.getAttributeClass(devAttr.getName());
+                            if (!actual.equals(type)) {
+                                logger.warn("Type of {}/{} has changed from {} to {}, restart to apply",
+                                        dev.getUrl(), devAttr.getName(), type.getName(), actual.getName());
+                                cache.put(dev.getUrl(), devAttr.getName(), actual);
+                            }
+                        } catch (ClientException | RuntimeException e) {
+                            logger.debug("Can not revalidate type of {}/{}: {}", dev.getUrl(), devAttr.getName(), e.getMessage());
+                        } finally {
+                            if (remaining.decrementAndGet() == 0) cache.save();
+                        }
+                    }
+                });
+            }
+        }
+        //threads exit as soon as all attributes are revalidated
+        exec.shutdown();
+    }
+
+    /**
+     * @return cache or null if it is off
+     */
+    private MetadataCache newMetadataCache() {
+        String metadataCache = configuration.getMetadataCache();
+        if (StatusServerConfiguration.METADATA_CACHE_OFF.equalsIgnoreCase(metadataCache)) return null;
+        return new MetadataCache(metadataCache != null ?
+                new File(metadataCache) : new File(configuration.getStorageRoot(), instanceName + ".metadata"));
+    }
+
+    private EventQueue newEventQueue(DataStorage storage) {
+        int capacity = configuration.getEventQueue() > 0 ? configuration.getEventQueue() : EventQueue.DEFAULT_CAPACITY;
+        return new EventQueue(storage, capacity, configuration.getEventWriters(), configuration.isEventCoalescing());
+    }
+
+    private MappedStorage newMappedStorage() {
+        String storage = configuration.getStorage();
+        if (StatusServerConfiguration.STORAGE_HEAP.equalsIgnoreCase(storage)) return null;
+        if (!StatusServerConfiguration.STORAGE_MMAP.equalsIgnoreCase(storage))
+            throw new IllegalArgumentException("Unknown storage: " + storage);
+
+        File root = new File(configuration.getStorageRoot(), instanceName);
+        logger.info("Collected records will be mapped into {}", root.getAbsolutePath());
+        return new MappedStorage(root);
+    }
 
-        return new Engine(exec, storage, polledAttributes, eventDrivenAttributes);
+    /**
+     * Releases the clients, engines created by this factory must be closed before
+     */
+    public void close() {
+        clientFactory.close();
     }
 
     public List<String> getFailedAttributes(){
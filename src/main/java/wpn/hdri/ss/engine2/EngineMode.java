@@ -0,0 +1,89 @@
+package wpn.hdri.ss.engine2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Defines which threads run {@link PollTask}s. In all modes ticks are fired by {@link TimerWheel}
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public enum EngineMode {
+    /**
+     * Reads run directly on the timer pool. A group of attributes of the same device and delay is read by a single
+     * task at a time, so the pool has a thread per group, but no more than {@link #MAX_SCHEDULED_THREADS}
+     */
+    SCHEDULED {
+        @Override
+        public ScheduledExecutorService newTimer(int pollingGroups) {
+            return Executors.newScheduledThreadPool(Math.max(1, Math.min(pollingGroups, MAX_SCHEDULED_THREADS)),
+                    new NamedThreadFactory("poll-timer"));
+        }
+
+        @Override
+        public ExecutorService newWorkers() {
+            return null;
+        }
+    },
+    /**
+     * A small timer runs maintenance only, reads are run by virtual threads. If the runtime has no virtual threads
+     * (before Java 21) a fixed pool is used instead, so the number of threads never depends on the number of attributes
+     */
+    VIRTUAL {
+        @Override
+        public ScheduledExecutorService newTimer(int pollingGroups) {
+            return Executors.newScheduledThreadPool(TIMER_THREADS, new NamedThreadFactory("poll-timer"));
+        }
+
+        @Override
+        public ExecutorService newWorkers() {
+            try {
+                ExecutorService result = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                logger.info("Polling on virtual threads");
+                return result;
+            } catch (NoSuchMethodException e) {
+                int size = Math.max(FALLBACK_WORKERS, 2 * Runtime.getRuntime().availableProcessors());
+                logger.info("Virtual threads are not available, polling on {} platform threads", size);
+                return Executors.newFixedThreadPool(size, new NamedThreadFactory("poll-worker"));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Can not create virtual threads executor", e);
+            }
+        }
+    },
+    /**
+     * A small timer runs maintenance only, reads do not block any thread: they are started by the wheel and
+     * completed by the client library, see {@link wpn.hdri.ss.client2.ClientAdaptor#readAsync(wpn.hdri.ss.data2.Attribute)}
+     */
+    ASYNC {
+        @Override
+        public ScheduledExecutorService newTimer(int pollingGroups) {
+            return Executors.newScheduledThreadPool(TIMER_THREADS, new NamedThreadFactory("poll-timer"));
+        }
+
+        @Override
+        public ExecutorService newWorkers() {
+            return null;
+        }
+    };
+
+    private static final Logger logger = LoggerFactory.getLogger(EngineMode.class);
+
+    static final int TIMER_THREADS = 2;
+    static final int FALLBACK_WORKERS = 16;
+    static final int MAX_SCHEDULED_THREADS = 64;
+
+    /**
+     * @param pollingGroups number of distinct (device, delay) pairs of the polled attributes
+     */
+    public abstract ScheduledExecutorService newTimer(int pollingGroups);
+
+    /**
+     * @return executor for reads or null if reads run on the timer pool
+     */
+    public abstract ExecutorService newWorkers();
+}
@@ -0,0 +1,257 @@
+package wpn.hdri.ss.engine2;
+
+import com.google.common.base.MoreObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wpn.hdri.ss.data2.SingleRecord;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves event records off the client library's callback threads.
+ * <p/>
+ * Callbacks only offer records into a bounded lock-free queue, writer threads drain it into {@link DataStorage} in
+ * batches of up to {@link #BATCH_SIZE}. Records of an attribute always go to the same writer, so each column keeps
+ * a single writer. When the queue is full new records are dropped. With coalescing on, a record that has the same
+ * w_t as the previous record of its attribute is not written. Writers exit once the queue is closed, see
+ * {@link #close()}.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+public class EventQueue {
+    private static final Logger logger = LoggerFactory.getLogger(EventQueue.class);
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(100L);
+
+    private final DataStorage storage;
+    private final boolean coalescing;
+    private final Writer[] writers;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile int maxDepth;
+    private volatile boolean closed;
+
+    public EventQueue(DataStorage storage) {
+        this(storage, DEFAULT_CAPACITY, 1, true);
+    }
+
+    /**
+     * @param capacity total number of records that may wait to be written
+     * @param writers number of writer threads
+     * @param coalescing whether records with duplicate w_t are skipped
+     */
+    public EventQueue(DataStorage storage, int capacity, int writers, boolean coalescing) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive!");
+        if (writers <= 0) throw new IllegalArgumentException("writers must be positive!");
+        this.storage = storage;
+        this.coalescing = coalescing;
+        this.writers = new Writer[writers];
+        for (int i = 0; i < writers; ++i) {
+            this.writers[i] = new Writer(i, Math.max(1, capacity / writers));
+        }
+    }
+
+    /**
+     * Never blocks
+     *
+     * @return false if record has been dropped or the queue is closed
+     */
+    public boolean offer(SingleRecord<?> record, boolean append) {
+        if (closed) return false;
+        offered.incrementAndGet();
+        Writer writer = writers[(record.attribute.id & Integer.MAX_VALUE) % writers.length];
+        int depth = writer.size.incrementAndGet();
+        if (depth > writer.capacity) {
+            writer.size.decrementAndGet();
+            if (dropped.getAndIncrement() == 0) logger.warn("Event queue is full, dropping records");
+            return false;
+        }
+        if (depth > maxDepth) maxDepth = depth;
+        writer.queue.offer(new Entry(record, append));
+        if (writer.waiting) LockSupport.unpark(writer.thread);
+        return true;
+    }
+
+    /**
+     * Waits until the records offered so far have been written
+     *
+     * @param timeout ms
+     * @return false if records are still waiting after timeout
+     */
+    public boolean awaitDrained(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (getDepth() > 0) {
+            if (System.nanoTime() - deadline > 0L) return false;
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that are already queued are still written, then writer threads exit. New records are rejected
+     */
+    public void close() {
+        closed = true;
+        for (Writer writer : writers) {
+            LockSupport.unpark(writer.thread);
+        }
+    }
+
+    public int getDepth() {
+        int result = 0;
+        for (Writer writer : writers) {
+            result += writer.size.get();
+        }
+        return result;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getOffered() {
+        return offered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        long result = 0L;
+        for (Writer writer : writers) {
+            result += writer.written;
+        }
+        return result;
+    }
+
+    public long getCoalesced() {
+        long result = 0L;
+        for (Writer writer : writers) {
+            result += writer.coalesced;
+        }
+        return result;
+    }
+
+    public long getBatches() {
+        long result = 0L;
+        for (Writer writer : writers) {
+            result += writer.batches;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("depth", getDepth())
+                .add("maxDepth", maxDepth)
+                .add("offered", getOffered())
+                .add("written", getWritten())
+                .add("coalesced", getCoalesced())
+                .add("dropped", getDropped())
+                .add("batches", getBatches())
+                .toString();
+    }
+
+    private static final class Entry {
+        final SingleRecord<?> record;
+        final boolean append;
+
+        Entry(SingleRecord<?> record, boolean append) {
+            this.record = record;
+            this.append = append;
+        }
+    }
+
+    private final class Writer implements Runnable {
+        final int capacity;
+        final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final Thread thread;
+        volatile boolean waiting;
+
+        //written by this writer only
+        volatile long written;
+        volatile long coalesced;
+        volatile long batches;
+        /**
+         * attribute.id -> w_t of the last written record
+         */
+        private long[] lastWriteTimes = new long[0];
+
+        Writer(int ndx, int capacity) {
+            this.capacity = capacity;
+            this.thread = new Thread(this, "event-writer-" + ndx);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                boolean closed = EventQueue.this.closed;
+                int drained = 0;
+                for (Entry entry; drained < BATCH_SIZE && (entry = queue.poll()) != null; ++drained) {
+                    write(entry);
+                }
+                if (drained > 0) {
+                    size.addAndGet(-drained);
+                    batches++;
+                    continue;
+                }
+                if (closed) return;
+                waiting = true;
+                if (queue.isEmpty()) LockSupport.parkNanos(this, IDLE_PARK);
+                waiting = false;
+            }
+        }
+
+        private void write(Entry entry) {
+            SingleRecord<?> record = entry.record;
+            if (coalescing && isDuplicate(record)) {
+                coalesced++;
+                return;
+            }
+            try {
+                if (entry.append)
+                    storage.appendRecord(record);
+                else
+                    storage.writeRecord(record);
+                written++;
+            } catch (RuntimeException e) {
+                //must not stop the writer
+                logger.error("Failed to write {}", record.attribute.fullName, e);
+            }
+        }
+
+        private boolean isDuplicate(SingleRecord<?> record) {
+            int id = record.attribute.id;
+            if (id >= lastWriteTimes.length) {
+                int length = lastWriteTimes.length;
+                lastWriteTimes = Arrays.copyOf(lastWriteTimes, Math.max(id + 1, 2 * length));
+                Arrays.fill(lastWriteTimes, length, lastWriteTimes.length, Long.MIN_VALUE);
+            }
+            if (lastWriteTimes[id] == record.w_t) return true;
+            lastWriteTimes[id] = record.w_t;
+            return false;
+        }
+    }
+}
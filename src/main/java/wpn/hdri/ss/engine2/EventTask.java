@@ -8,19 +8,32 @@ import wpn.hdri.ss.data2.Attribute;
 import wpn.hdri.ss.data2.SingleRecord;
 
 /**
+ * Called by the client library, so records are passed to {@link EventQueue} if there is one
+ *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 10.11.2015
  */
 public class EventTask extends AbsTask {
     private static final Logger logger = LoggerFactory.getLogger(EventTask.class);
 
+    private final EventQueue queue;
 
     public EventTask(Attribute attr, DataStorage storage, boolean append) {
+        this(attr, storage, null, append);
+    }
+
+    /**
+     * @param queue null to write on the caller's thread
+     */
+    public EventTask(Attribute attr, DataStorage storage, EventQueue queue, boolean append) {
         super(attr, storage, append);
+        this.queue = queue;
     }
 
     public void onEvent(SingleRecord<?> record) {
-        if(append)
+        if (queue != null)
+            queue.offer(record, append);
+        else if(append)
             storage.appendRecord(record);
          else
             storage.writeRecord(record);
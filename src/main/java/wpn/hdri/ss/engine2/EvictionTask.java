@@ -0,0 +1,136 @@
+package wpn.hdri.ss.engine2;
+
+import com.google.common.base.MoreObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import wpn.hdri.ss.data2.AllRecords;
+import wpn.hdri.ss.data2.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts collected records in small steps, see {@link AllRecords#evict(long, long, int)}.
+ * <p/>
+ * Runs every {@link #PERIOD} ms and drops at most {@link #MAX_CHUNKS_PER_RUN} chunks, so neither writers nor readers
+ * are held for long. Retention and memory budget may be changed at any time.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class EvictionTask implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(EvictionTask.class);
+
+    public static final long PERIOD = 1000L;
+    public static final int MAX_CHUNKS_PER_RUN = 64;
+
+    public static final long DEFAULT_RETENTION = 30000L;
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final DataStorage storage;
+
+    private volatile long retention;
+    private volatile long memoryBudget;
+
+    //stats are written only by the eviction thread
+    private volatile long runs;
+    private volatile long droppedChunks;
+    private volatile long lastDuration;
+    private volatile long maxDuration;
+    private volatile long totalDuration;
+
+    public EvictionTask(DataStorage storage) {
+        this(storage, DEFAULT_RETENTION, UNLIMITED);
+    }
+
+    /**
+     * @param retention ms
+     * @param memoryBudget bytes
+     */
+    public EvictionTask(DataStorage storage, long retention, long memoryBudget) {
+        this.storage = storage;
+        setRetention(retention);
+        setMemoryBudget(memoryBudget);
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        int dropped = 0;
+        try {
+            dropped = storage.getAllRecords().evict(Clock.currentTimeNanos() - TimeUnit.MILLISECONDS.toNanos(retention), memoryBudget, MAX_CHUNKS_PER_RUN);
+        } catch (RuntimeException e) {
+            //must not cancel the periodic task
+            logger.error("Eviction has failed", e);
+        }
+        long duration = System.nanoTime() - start;
+
+        runs++;
+        droppedChunks += dropped;
+        lastDuration = duration;
+        maxDuration = Math.max(maxDuration, duration);
+        totalDuration += duration;
+
+        if (dropped > 0) logger.debug("Evicted {} chunks in {} us", dropped, TimeUnit.NANOSECONDS.toMicros(duration));
+        if (dropped == MAX_CHUNKS_PER_RUN) logger.debug("Eviction is behind, will continue in {} ms", PERIOD);
+    }
+
+    /**
+     * @return ms
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        if (retention < 0) throw new IllegalArgumentException("retention must be positive!");
+        this.retention = retention;
+    }
+
+    /**
+     * @return bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) throw new IllegalArgumentException("memory budget must be positive!");
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public long getDroppedChunks() {
+        return droppedChunks;
+    }
+
+    /**
+     * @return duration of the last run in ns
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    public long getAverageDuration() {
+        long runs = this.runs;
+        return runs == 0 ? 0L : totalDuration / runs;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("retention", retention)
+                .add("memoryBudget", memoryBudget)
+                .add("runs", runs)
+                .add("droppedChunks", droppedChunks)
+                .add("lastDuration", lastDuration)
+                .add("maxDuration", maxDuration)
+                .toString();
+    }
+}
@@ -0,0 +1,106 @@
+package wpn.hdri.ss.engine2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Types of attributes resolved by previous runs, stored as a properties file: device url/attribute name = class name.
+ * <p/>
+ * Lets {@link EngineFactory} start collecting without asking every device first, see discovery in
+ * {@link EngineFactory#newEngine()}.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+public class MetadataCache {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataCache.class);
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class}) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    private final File file;
+    private final ConcurrentMap<String, String> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Loads file if it exists, a broken file is ignored
+     */
+    public MetadataCache(File file) {
+        this.file = file;
+        if (!file.exists()) return;
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            logger.warn("Can not load metadata cache {}", file.getAbsolutePath(), e);
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            entries.put(key, properties.getProperty(key));
+        }
+        logger.info("Loaded {} attribute types from {}", entries.size(), file.getAbsolutePath());
+    }
+
+    /**
+     * @return cached type or null if there is none or it can not be loaded
+     */
+    public Class<?> get(String deviceUrl, String attrName) {
+        String className = entries.get(key(deviceUrl, attrName));
+        if (className == null) return null;
+        Class<?> result = PRIMITIVES.get(className);
+        if (result != null) return result;
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            logger.warn("Can not load cached type {} of {}/{}", className, deviceUrl, attrName);
+            return null;
+        }
+    }
+
+    public void put(String deviceUrl, String attrName, Class<?> type) {
+        entries.put(key(deviceUrl, attrName), type.getName());
+    }
+
+    /**
+     * Replaces the file, so a crash while saving leaves the previous version
+     */
+    public synchronized void save() {
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can not create " + dir.getAbsolutePath());
+            File tmp = new File(dir, file.getName() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "StatusServer attribute types");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Can not save metadata cache {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    private static String key(String deviceUrl, String attrName) {
+        return deviceUrl + "/" + attrName;
+    }
+}
@@ -0,0 +1,26 @@
+package wpn.hdri.ss.engine2;
+
+/**
+ * Defines what happens to a {@link PollTask} whose read takes longer than its polling delay
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public enum OverloadPolicy {
+    /**
+     * Ticks that come while the read is still running are skipped
+     */
+    SKIP,
+    /**
+     * As SKIP, in addition after an overrun the task waits as many ticks as the read has taken, so a slow device
+     * is polled at the rate it can serve
+     */
+    STRETCH,
+    /**
+     * As SKIP, after {@link #OVERRUNS_TO_DEGRADE} overruns in a row the task stops polling and subscribes to events
+     * instead. Applies only if all attributes of the task define an event type
+     */
+    EVENTS;
+
+    public static final int OVERRUNS_TO_DEGRADE = 3;
+}
@@ -0,0 +1,128 @@
+package wpn.hdri.ss.engine2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read latency of a {@link PollTask} against its polling delay.
+ * <p/>
+ * A read that takes longer than the delay is an overrun, by how much it is late is counted in {@link #LATENESS_BOUNDS}
+ * buckets. Reads are recorded by the task only, skipped ticks by the timer only.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class PollStats {
+    /**
+     * Upper bounds of lateness buckets, ms. The last bucket is unbounded
+     */
+    public static final long[] LATENESS_BOUNDS = {10L, 100L, 1000L};
+
+    private final long period;
+
+    private volatile long reads;
+    private volatile long overruns;
+    private volatile long consecutiveOverruns;
+    private volatile long skipped;
+    private volatile long lastLatency;
+    private volatile long maxLatency;
+    private final AtomicLongArray lateness = new AtomicLongArray(LATENESS_BOUNDS.length + 1);
+
+    /**
+     * @param period ms
+     */
+    public PollStats(long period) {
+        this.period = TimeUnit.MILLISECONDS.toNanos(period);
+    }
+
+    /**
+     * @param latency ns
+     * @return true if read has overrun
+     */
+    boolean onRead(long latency) {
+        reads++;
+        lastLatency = latency;
+        maxLatency = Math.max(maxLatency, latency);
+        if (latency <= period) {
+            consecutiveOverruns = 0;
+            return false;
+        }
+        overruns++;
+        consecutiveOverruns++;
+        long late = TimeUnit.NANOSECONDS.toMillis(latency - period);
+        int bucket = 0;
+        while (bucket < LATENESS_BOUNDS.length && late > LATENESS_BOUNDS[bucket]) bucket++;
+        lateness.incrementAndGet(bucket);
+        return true;
+    }
+
+    void onSkip() {
+        skipped++;
+    }
+
+    /**
+     * @return ns
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getConsecutiveOverruns() {
+        return consecutiveOverruns;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return ns
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * @return ns
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * @return counts of overruns per lateness bucket, see {@link #LATENESS_BOUNDS}
+     */
+    public long[] getLateness() {
+        long[] result = new long[lateness.length()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = lateness.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder()
+                .append("reads=").append(reads)
+                .append(";overruns=").append(overruns)
+                .append(";skipped=").append(skipped)
+                .append(";lastLatencyMs=").append(TimeUnit.NANOSECONDS.toMillis(lastLatency))
+                .append(";maxLatencyMs=").append(TimeUnit.NANOSECONDS.toMillis(maxLatency))
+                .append(";lateMs=");
+        long[] lateness = getLateness();
+        for (int i = 0; i < lateness.length; ++i) {
+            if (i > 0) result.append(',');
+            result.append(i < LATENESS_BOUNDS.length ? "<=" + LATENESS_BOUNDS[i] : ">" + LATENESS_BOUNDS[i - 1])
+                    .append(':').append(lateness[i]);
+        }
+        return result.toString();
+    }
+}
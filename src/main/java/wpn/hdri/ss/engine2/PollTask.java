@@ -3,32 +3,346 @@ package wpn.hdri.ss.engine2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import wpn.hdri.ss.client.ClientException;
+import wpn.hdri.ss.data.Method;
 import wpn.hdri.ss.data2.Attribute;
 import wpn.hdri.ss.data2.SingleRecord;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
+ * Polls a single attribute or a group of attributes of the same device, see {@link wpn.hdri.ss.client2.ClientAdaptor#readAll(List)}
+ *
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
  * @since 10.11.2015
  */
 public class PollTask extends AbsTask implements Runnable {
+    /**
+     * Asynchronous read that has not completed within this time has failed, ms
+     */
+    public static final long ASYNC_TIMEOUT = 10000L;
 
-
+    /**
+     * Attributes of the same device, including attr
+     */
+    private final List<Attribute<?>> attrs;
+    /**
+     * Same order as attrs, null if polling is not adaptive
+     */
+    private final List<AdaptiveDelay> delays;
+    private final PollStats stats;
+    /**
+     * Shared by all tasks of the device, may be null
+     */
+    private final CircuitBreaker breaker;
+    private final EventQueue events;
+    /**
+     * Guards against concurrent runs, column of the attribute must have a single writer
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+    //written by the timer, read by the worker after running has been set
+    private long dispatched;
+    //written by the worker before running is reset, read by the timer
+    private int stretch;
+    private volatile boolean degraded;
+    private volatile boolean cancelled;
 
     public PollTask(Attribute<?> attr, DataStorage storage, boolean append) {
-        super(attr, storage, append);
+        this(Collections.<Attribute<?>>singletonList(attr), storage, append);
+    }
+
+    /**
+     * @param attrs not empty, all attributes must share the same client
+     */
+    public PollTask(List<Attribute<?>> attrs, DataStorage storage, boolean append) {
+        this(attrs, null, Long.MAX_VALUE, null, storage, null, append);
+    }
+
+    /**
+     * @param delays one per attribute or null to read all attributes on every tick
+     * @param period polling delay, ms
+     * @param breaker circuit breaker of the device or null
+     * @param events receives events if task is degraded, may be null
+     */
+    public PollTask(List<Attribute<?>> attrs, List<AdaptiveDelay> delays, long period, CircuitBreaker breaker,
+                    DataStorage storage, EventQueue events, boolean append) {
+        super(attrs.get(0), storage, append);
+        if (delays != null && delays.size() != attrs.size())
+            throw new IllegalArgumentException("delays must match attributes");
+        this.attrs = attrs;
+        this.delays = delays;
+        this.stats = new PollStats(period);
+        this.breaker = breaker;
+        this.events = events;
+    }
+
+    public List<Attribute<?>> getAttributes() {
+        return attrs;
+    }
+
+    public PollStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return true if this task has been replaced by event subscriptions, see {@link OverloadPolicy#EVENTS}
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * Ticks fired after this call do nothing, waits for the current run to finish, so another task may take over
+     * the columns of the attributes
+     *
+     * @param timeout ms
+     * @return false if the current run has not finished within timeout
+     */
+    public boolean cancel(long timeout) {
+        cancelled = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (running.get()) {
+            if (System.nanoTime() - deadline > 0L) return false;
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a tick that runs this task on the executor unless the previous run has not finished yet
+     */
+    public Runnable dispatchTo(Executor executor) {
+        return dispatchTo(executor, OverloadPolicy.SKIP);
+    }
+
+    /**
+     * Latency of a read is measured from the tick, so time spent waiting for a free worker counts as well
+     *
+     * @return a tick that runs this task on the executor according to the policy
+     */
+    public Runnable dispatchTo(final Executor executor, final OverloadPolicy policy) {
+        final Runnable guarded = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PollTask.this.run();
+                    afterRun(policy);
+                } finally {
+                    running.set(false);
+                }
+            }
+        };
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!acquire()) return;
+                try {
+                    executor.execute(guarded);
+                } catch (RuntimeException e) {
+                    onPolled(null);
+                    running.set(false);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads are started by the timer thread without blocking it, records are stored by the client library's threads.
+     * The task does not run again until all reads of the current run have completed or failed after {@link #ASYNC_TIMEOUT}
+     *
+     * @return a tick that starts asynchronous reads according to the policy
+     */
+    public Runnable dispatchAsync(final OverloadPolicy policy) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!acquire()) return;
+                CompletableFuture<Boolean> poll;
+                try {
+                    poll = pollAsync();
+                } catch (RuntimeException e) {
+                    onPolled(Boolean.FALSE);
+                    running.set(false);
+                    throw e;
+                }
+                poll.whenComplete((success, failure) -> {
+                    try {
+                        onPolled(failure == null ? success : Boolean.FALSE);
+                        afterRun(policy);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @return true if this tick may run the task, running has been set then
+     */
+    private boolean acquire() {
+        if (degraded || cancelled) return false;
+        if (running.get()) {
+            stats.onSkip();
+            return false;
+        }
+        if (stretch > 0) {
+            stretch--;
+            stats.onSkip();
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) return false;
+        //cancel may have checked running just before it has been set
+        if (cancelled || breaker != null && !breaker.allowRequest()) {
+            running.set(false);
+            return false;
+        }
+        dispatched = System.nanoTime();
+        return true;
+    }
+
+    private void afterRun(OverloadPolicy policy) {
+        long latency = System.nanoTime() - dispatched;
+        if (!stats.onRead(latency)) return;
+        switch (policy) {
+            case STRETCH:
+                stretch = (int) Math.min(Integer.MAX_VALUE, latency / stats.getPeriod());
+                break;
+            case EVENTS:
+                if (stats.getConsecutiveOverruns() >= OverloadPolicy.OVERRUNS_TO_DEGRADE) degrade();
+                break;
+        }
     }
 
+    private void degrade() {
+        for (Attribute<?> attr : attrs) {
+            if (attr.eventType == null || attr.eventType == Method.EventType.NONE) return;
+        }
+        logger.warn("Polling of {} can not keep up, subscribing to events instead", attr.fullName);
+        degraded = true;
+        for (Attribute<?> attr : attrs) {
+            attr.devClient.subscribe(new EventTask(attr, storage, events, append));
+        }
+    }
+
+    /**
+     * Reports the outcome to the breaker even if the client throws, so a failed probe does not block the device
+     */
     @Override
     public void run() {
+        Boolean success = Boolean.FALSE;
         try {
-            SingleRecord<?> result = attr.devClient.read(attr);
+            success = poll();
+        } finally {
+            onPolled(success);
+        }
+    }
+
+    /**
+     * @param success null if no request has been made
+     */
+    private void onPolled(Boolean success) {
+        if (breaker == null) return;
+        if (success == null) breaker.onSkipped();
+        else if (success) breaker.onSuccess();
+        else breaker.onFailure();
+    }
+
+    /**
+     * @return true if at least one attribute has been read, false if all have failed, null if none was due
+     */
+    private Boolean poll() {
+        int[] due = getDue();
+        if (due.length == 0) return null;
 
-            if(append)
-                storage.appendRecord(result);
-            else
-                storage.writeRecord(result);
+        try {
+            if (due.length == 1) {
+                Attribute<?> attr = attrs.get(due[0]);
+                onRead(due[0], attr.devClient.read(attr));
+                return true;
+            }
+            List<Attribute<?>> dueAttrs = new ArrayList<>(due.length);
+            for (int ndx : due) {
+                dueAttrs.add(attrs.get(ndx));
+            }
+            List<SingleRecord<?>> results = attr.devClient.readAll(dueAttrs);
+            boolean success = false;
+            for (int i = 0, size = results.size(); i < size; ++i) {
+                success |= results.get(i) != null;
+                onRead(due[i], results.get(i));
+            }
+            return success;
         } catch (ClientException e) {
             logger.error(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Each attribute is read by its own request
+     *
+     * @return same as {@link #poll()}, never fails
+     */
+    private CompletableFuture<Boolean> pollAsync() {
+        int[] due = getDue();
+        if (due.length == 0) return CompletableFuture.completedFuture(null);
+
+        final AtomicBoolean success = new AtomicBoolean();
+        CompletableFuture<?>[] reads = new CompletableFuture<?>[due.length];
+        for (int i = 0; i < due.length; ++i) {
+            final int ndx = due[i];
+            final Attribute<?> attr = attrs.get(ndx);
+            reads[i] = attr.devClient.readAsync(attr)
+                    .orTimeout(ASYNC_TIMEOUT, TimeUnit.MILLISECONDS)
+                    .handle((result, failure) -> {
+                        if (failure != null) {
+                            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                            logger.error("Failed to read {}: {}", attr.fullName, cause.toString());
+                            return null;
+                        }
+                        success.set(true);
+                        onRead(ndx, result);
+                        return null;
+                    });
+        }
+        return CompletableFuture.allOf(reads).thenApply(ignored -> success.get());
+    }
+
+    /**
+     * @return indices of the attributes to read on this tick
+     */
+    private int[] getDue() {
+        int[] result = new int[attrs.size()];
+        int size = 0;
+        for (int i = 0; i < result.length; ++i) {
+            if (delays == null || delays.get(i).isDue()) result[size++] = i;
         }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private void onRead(int ndx, SingleRecord<?> result) {
+        if (result == null) return;
+        if (delays != null) delays.get(ndx).onRead(result.w_t);
+        store(result);
+    }
+
+    private void store(SingleRecord<?> result) {
+        if(append)
+            storage.appendRecord(result);
+        else
+            storage.writeRecord(result);
     }
 }
@@ -0,0 +1,214 @@
+package wpn.hdri.ss.engine2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel that fires periodic tasks.
+ * <p/>
+ * Tasks with the same delay form a group that is fired on a single tick, so all reads that are due start together.
+ * Groups are hashed into the wheel by their next deadline tick, each tick touches only its own slot. The wheel is
+ * driven by a single thread, therefore tasks must not block, see {@link PollTask#dispatchTo(java.util.concurrent.Executor)}.
+ * Delays are rounded up to whole ticks.
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+@ThreadSafe
+public class TimerWheel {
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    public static final long DEFAULT_TICK = 5L;
+    static final int WHEEL_SIZE = 512;
+
+    private final long tick;
+    private final long tickNanos;
+
+    /**
+     * Slots are accessed only by the wheel thread
+     */
+    private final List<Group>[] wheel;
+    /**
+     * Groups created by other threads, placed into the wheel on the next tick
+     */
+    private final Queue<Group> pending = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentMap<Long, Group> groups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Group> groupsByName = new ConcurrentHashMap<>();
+
+    private volatile long currentTick;
+    private Thread thread;
+    private volatile boolean stopped;
+
+    public TimerWheel() {
+        this(DEFAULT_TICK);
+    }
+
+    /**
+     * @param tick ms
+     */
+    public TimerWheel(long tick) {
+        if (tick <= 0) throw new IllegalArgumentException("tick must be positive!");
+        this.tick = tick;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tick);
+        this.wheel = new List[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; ++i) {
+            wheel[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds a periodic task. The first run happens on the next tick
+     *
+     * @param name unique name of the task
+     * @param delay ms
+     * @param task must not block
+     */
+    public void add(String name, long delay, Runnable task) {
+        final long delayTicks = Math.max(1L, (delay + tick - 1) / tick);
+        while (true) {
+            Group group = groups.computeIfAbsent(delayTicks, key -> {
+                Group result = new Group(key);
+                pending.add(result);
+                return result;
+            });
+            synchronized (group) {
+                if (group.dead) continue;
+                Group old = groupsByName.put(name, group);
+                if (old != null && old != group) old.tasks.remove(name);
+                group.tasks.put(name, task);
+                break;
+            }
+        }
+        start();
+    }
+
+    public void remove(String name) {
+        Group group = groupsByName.remove(name);
+        if (group != null) group.tasks.remove(name);
+    }
+
+    private synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::loop, "poll-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private void loop() {
+        long start = System.nanoTime();
+        long tick = 0L;
+        List<Group> fired = new ArrayList<>();
+        while (!stopped) {
+            long deadline = start + (tick + 1) * tickNanos;
+            for (long sleep; (sleep = deadline - System.nanoTime()) > 0 && !stopped; ) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            currentTick = ++tick;
+
+            for (Group group; (group = pending.poll()) != null; ) {
+                place(group, tick + 1);
+            }
+
+            List<Group> slot = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+            for (int i = 0; i < slot.size(); ) {
+                Group group = slot.get(i);
+                if (group.deadline > tick) {
+                    ++i;
+                    continue;
+                }
+                slot.set(i, slot.get(slot.size() - 1));
+                slot.remove(slot.size() - 1);
+                if (fire(group, tick)) fired.add(group);
+            }
+            for (Group group : fired) {
+                place(group, tick + group.delayTicks);
+            }
+            fired.clear();
+        }
+    }
+
+    private void place(Group group, long deadline) {
+        group.deadline = deadline;
+        wheel[(int) (deadline & (WHEEL_SIZE - 1))].add(group);
+    }
+
+    /**
+     * @return false if group is empty and has been dropped
+     */
+    private boolean fire(Group group, long tick) {
+        synchronized (group) {
+            if (group.tasks.isEmpty()) {
+                group.dead = true;
+                groups.remove(group.delayTicks, group);
+                return false;
+            }
+        }
+        group.lateness = tick - group.deadline;
+        group.fired++;
+        for (Map.Entry<String, Runnable> task : group.tasks.entrySet()) {
+            try {
+                task.getValue().run();
+            } catch (RuntimeException e) {
+                logger.error("Task {} has failed", task.getKey(), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a line per group: delay, number of tasks, number of fires, ticks the last fire was late and next fire
+     */
+    public List<String> getSchedule() {
+        long now = currentTick;
+        List<String> result = new ArrayList<>();
+        for (Group group : groups.values()) {
+            result.add(String.format("delay=%d;tasks=%d;fired=%d;lateMs=%d;nextInMs=%d",
+                    group.delayTicks * tick, group.tasks.size(), group.fired, group.lateness * tick,
+                    Math.max(0L, group.deadline - now) * tick));
+        }
+        return result;
+    }
+
+    /**
+     * @return names of the tasks fired with the given delay
+     */
+    public List<String> getTasks(long delay) {
+        Group group = groups.get(Math.max(1L, (delay + tick - 1) / tick));
+        return group == null ? new ArrayList<String>() : new ArrayList<>(group.tasks.keySet());
+    }
+
+    private static final class Group {
+        final long delayTicks;
+        final ConcurrentMap<String, Runnable> tasks = new ConcurrentHashMap<>();
+        /**
+         * Guarded by this
+         */
+        boolean dead;
+
+        //written by the wheel thread only
+        volatile long deadline;
+        volatile long fired;
+        volatile long lateness;
+
+        Group(long delayTicks) {
+            this.delayTicks = delayTicks;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.common.base.MoreObjects;
 import wpn.hdri.ss.data2.Attribute;
 
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
 * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
@@ -14,7 +15,18 @@ public class Context {
     public volatile boolean useAliases = false;
     public volatile boolean encode = false;
     public volatile OutputType outputType = OutputType.PLAIN;
+    /**
+     * Unit of timestamps in requests and output of this client
+     */
+    public volatile TimeUnit timeUnit = TimeUnit.MILLISECONDS;
+    /**
+     * ns
+     */
     public volatile long lastTimestamp;
+    /**
+     * Sequence numbers of {@link wpn.hdri.ss.data2.Snapshot} slots seen by this client, null until the first request
+     */
+    public volatile long[] lastSequences;
     public final ContextManager contextManager;
 
     /**
@@ -36,6 +48,7 @@ public class Context {
                 .add("useAliases", useAliases)
                 .add("encode", encode)
                 .add("outputType", outputType)
+                .add("timeUnit", timeUnit)
                 .add("lastTimestamp", lastTimestamp)
                 .toString();
     }
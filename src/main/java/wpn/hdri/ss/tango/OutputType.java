@@ -7,12 +7,12 @@ import com.google.common.collect.Iterables;
 import com.onjava.lang.DoubleToString;
 import fr.esrf.TangoApi.PipeBlob;
 import org.apache.commons.lang3.ArrayUtils;
-import wpn.hdri.ss.data2.Attribute;
-import wpn.hdri.ss.data2.SingleRecord;
+import wpn.hdri.ss.data2.*;
 
 import javax.annotation.Nullable;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
 * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
@@ -28,17 +28,10 @@ public enum OutputType {
             for (RecordsContainer<?> container : tmp) {
                 if (container.records.size() == 0) continue;//skip empty values in the pipe
 
-                Class<?> valueType = Iterables.getFirst(container.records, null).value.getClass();
-
-                List<Object> values = new ArrayList<>();
-                LongArrayList times = new LongArrayList();
-
-                for(SingleRecord<?> record : container.records){
-                    values.add(record.value);
-                    times.add(record.w_t);
-                }
-
-                result.add(container.attrName, values.toArray((Object[]) Array.newInstance(valueType, values.size())), times.toArray());
+                if (container.records.get(0) instanceof ArrayRecord)
+                    addArrays(result, container, ctx);
+                else
+                    result.add(container.attrName, toValuesArray(container.records), toTimesArray(container.records, ctx));
             }
 
             return result.asPipeBlob();
@@ -57,9 +50,9 @@ public enum OutputType {
                 if(record == null) continue;
                 StringBuilder bld = stringBuilderMap.get(record.attribute.fullName);
                 bld
-                        .append("\n@").append(record.r_t)
+                        .append("\n@").append(readTime(record, ctx))
                         .append('[').append(valueToString(record))
-                        .append('@').append(record.w_t).append(']');
+                        .append('@').append(writeTime(record, ctx)).append(']');
             }
 
             return Iterables.toArray(Iterables.transform(stringBuilderMap.values(), new Function<StringBuilder, String>() {
@@ -94,7 +87,7 @@ public enum OutputType {
                     SingleRecord<?> record = container.records.get(i);
 
                     data.add(String.format("{\'read\':%d,\'write\':%d,\'value\':%s}",
-                            record.r_t, record.w_t, valueToString(record)));
+                            readTime(record, ctx), writeTime(record, ctx), valueToString(record)));
                 }
 
                 recordBld.append(Joiner.on(',').join(data));
@@ -115,23 +108,129 @@ public enum OutputType {
                 public String apply(@Nullable SingleRecord<?> input) {
                     return String.format("%s\t%d\t%s\t%d\n",
                             ctx.useAliases ? input.attribute.alias : input.attribute.fullName,
-                            input.r_t, valueToString(input), input.w_t);
+                            readTime(input, ctx), valueToString(input), writeTime(input, ctx));
                 }
             }), String.class);
         }
     };
 
+    /**
+     * @return r_t in the client's time unit
+     */
+    private static long readTime(SingleRecord<?> record, Context ctx) {
+        return ctx.timeUnit.convert(record.r_t, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return w_t in the client's time unit
+     */
+    private static long writeTime(SingleRecord<?> record, Context ctx) {
+        return ctx.timeUnit.convert(record.w_t, TimeUnit.MILLISECONDS);
+    }
+
     private static String valueToString(SingleRecord<?> record) {
-        if(record.value.getClass().isArray())
-            return ArrayUtils.toString(record.value);
-        else if(record.value.getClass() == double.class || record.value.getClass() == Double.class){
-            StringBuffer buf = new StringBuffer();
-            new DoubleToString().append(buf, (double)(Double)record.value);
-            return buf.toString();
-        } else if(record.value.getClass() == String.class)
-            return "\'" + (String)record.value + "\'";
+        if(record instanceof DoubleRecord)
+            return doubleToString(record.doubleValue());
+        else if(record instanceof LongRecord)
+            return Long.toString(((LongRecord) record).longValue());
+        else if(record instanceof IntRecord)
+            return Integer.toString(((IntRecord) record).intValue());
+        else if(record instanceof ArrayRecord)
+            return arrayToString((ArrayRecord) record);
+
+        Object value = record.getValue();
+        if(value.getClass().isArray())
+            return ArrayUtils.toString(value);
+        else if(value.getClass() == Double.class){
+            return doubleToString((Double) value);
+        } else if(value.getClass() == String.class)
+            return "\'" + (String)value + "\'";
         else
-            return String.valueOf(record.value);
+            return String.valueOf(value);
+    }
+
+    /**
+     * Spectra and images are returned by the pipe only, text outputs carry their shape, e.g. 'double[512x256]'
+     */
+    private static String arrayToString(ArrayRecord record) {
+        String type = record.getValue().getClass().getComponentType().getSimpleName();
+        return record.isImage() ?
+                "\'" + type + "[" + record.dimX + "x" + record.dimY + "]\'" :
+                "\'" + type + "[" + record.dimX + "]\'";
+    }
+
+    private static String doubleToString(double value) {
+        StringBuffer buf = new StringBuffer();
+        new DoubleToString().append(buf, value);
+        return buf.toString();
+    }
+
+    /**
+     * @return primitive array for primitive records, array of the value type otherwise
+     */
+    private static Object toValuesArray(List<? extends SingleRecord<?>> records) {
+        int size = records.size();
+        SingleRecord<?> first = records.get(0);
+        if (first instanceof DoubleRecord) {
+            double[] result = new double[size];
+            for (int i = 0; i < size; ++i) result[i] = records.get(i).doubleValue();
+            return result;
+        } else if (first instanceof LongRecord) {
+            long[] result = new long[size];
+            for (int i = 0; i < size; ++i) result[i] = ((LongRecord) records.get(i)).longValue();
+            return result;
+        } else if (first instanceof IntRecord) {
+            int[] result = new int[size];
+            for (int i = 0; i < size; ++i) result[i] = ((IntRecord) records.get(i)).intValue();
+            return result;
+        }
+
+        Object[] result = (Object[]) Array.newInstance(first.getValue().getClass(), size);
+        for (int i = 0; i < size; ++i) result[i] = records.get(i).getValue();
+        return result;
+    }
+
+    /**
+     * Frames of all records are concatenated into a single primitive array, length of each frame is in dim_x and
+     * dim_y, dim_y is 0 for spectra
+     */
+    private static void addArrays(StatusServerPipeBlob result, RecordsContainer<?> container, Context ctx) {
+        List<? extends SingleRecord<?>> records = container.records;
+        int size = records.size();
+        int[] dimX = new int[size];
+        int[] dimY = new int[size];
+        int length = 0;
+        Class<?> type = records.get(0).getValue().getClass().getComponentType();
+        for (int i = 0; i < size; ++i) {
+            ArrayRecord record = (ArrayRecord) records.get(i);
+            dimX[i] = record.dimX;
+            dimY[i] = record.dimY;
+            length += record.length();
+            if (record.getValue().getClass().getComponentType() != type) type = double.class;
+        }
+
+        Object values = Array.newInstance(type, length);
+        int pos = 0;
+        for (SingleRecord<?> record : records) {
+            Object value = record.getValue();
+            int frame = Array.getLength(value);
+            if (value.getClass().getComponentType() == type) {
+                System.arraycopy(value, 0, values, pos, frame);
+            } else {
+                for (int i = 0; i < frame; ++i) Array.setDouble(values, pos + i, Array.getDouble(value, i));
+            }
+            pos += frame;
+        }
+
+        result.add(container.attrName, values, toTimesArray(records, ctx), dimX, dimY);
+    }
+
+    private static long[] toTimesArray(List<? extends SingleRecord<?>> records, Context ctx) {
+        LongArrayList times = new LongArrayList();
+        for(SingleRecord<?> record : records){
+            times.add(writeTime(record, ctx));
+        }
+        return times.toArray();
     }
 
     private static Collection<RecordsContainer<?>> toRecordsContainerCollection(Iterable<SingleRecord<?>> records) {
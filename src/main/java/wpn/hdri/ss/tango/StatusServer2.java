@@ -32,12 +32,18 @@ import org.tango.server.device.DeviceManager;
 import org.tango.server.dynamic.DynamicManager;
 import org.tango.server.pipe.PipeValue;
 import org.tango.utils.ClientIDUtil;
+import wpn.hdri.ss.client.ClientException;
+import wpn.hdri.ss.configuration.DeviceAttribute;
 import wpn.hdri.ss.configuration.StatusServerAttribute;
 import wpn.hdri.ss.configuration.StatusServerConfiguration;
 import wpn.hdri.ss.data.Method;
 import wpn.hdri.ss.data2.*;
 import wpn.hdri.ss.engine2.Engine;
 import wpn.hdri.ss.engine2.EngineFactory;
+import wpn.hdri.ss.engine2.CircuitBreaker;
+import wpn.hdri.ss.engine2.EventQueue;
+import wpn.hdri.ss.engine2.EvictionTask;
+import wpn.hdri.ss.engine2.PollStats;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -103,6 +109,7 @@ public class StatusServer2 {
 
 
     private Engine engine;
+    private EngineFactory engineFactory;
 
     private ContextManager contextManager;
     ;
@@ -165,13 +172,12 @@ public class StatusServer2 {
 
         Iterable<SingleRecord<?>> range;
         if (getStatus().endsWith(StatusServerStatus.HEAVY_DUTY))
-            range = engine.getStorage().getAllRecords().getRange();
+            range = getGroupRange(Long.MIN_VALUE, Long.MAX_VALUE);
         else
-            range = engine.getStorage().getSnapshot();
-        FilteredRecords filteredRange = new FilteredRecords(contextManager.getGroup(), range);
+            range = new FilteredRecords(contextManager.getGroup(), engine.getStorage().getSnapshot());
 
 
-        return recordsToStrings(filteredRange, ctx);
+        return recordsToStrings(range, ctx);
     }
 
     @Attribute
@@ -180,15 +186,29 @@ public class StatusServer2 {
 
         long lastTimestamp = ctx.lastTimestamp;
 
-        ctx.lastTimestamp = System.currentTimeMillis();
+        ctx.lastTimestamp = Clock.currentTimeNanos();
 
         Iterable<SingleRecord<?>> range;
         if(StatusServerStatus.HEAVY_DUTY == getStatus())
-            range = engine.getStorage().getAllRecords().getRange(lastTimestamp);
+            range = getGroupRange(lastTimestamp, Long.MAX_VALUE);
         else
-            range = engine.getStorage().getSnapshot();
-        FilteredRecords filteredRange = new FilteredRecords(contextManager.getGroup(), range);
-        return recordsToStrings(filteredRange, ctx);
+            range = getSnapshotUpdates(ctx);
+        return recordsToStrings(range, ctx);
+    }
+
+    /**
+     * @return only the latest values that have changed since the last request of this client
+     */
+    private Iterable<SingleRecord<?>> getSnapshotUpdates(Context ctx) {
+        Snapshot snapshot = engine.getStorage().getSnapshot();
+        long[] lastSequences = ctx.lastSequences;
+        if (lastSequences == null) ctx.lastSequences = lastSequences = new long[snapshot.size()];
+        //attributes have been added since the last request
+        else if (lastSequences.length < snapshot.size()) ctx.lastSequences = lastSequences = Arrays.copyOf(lastSequences, snapshot.size());
+
+        AttributesGroup group = contextManager.getGroup();
+        if (group.isDefault()) return snapshot.getUpdates(lastSequences);
+        else return snapshot.getUpdates(lastSequences, group.attributes);
     }
 
     @Attribute
@@ -203,20 +223,136 @@ public class StatusServer2 {
                 .setClientId(ClientIDUtil.toString(invocationContext.getClientID()));
     }
 
+    /**
+     * @return current time in the client's time unit
+     */
     @Attribute
     public long getCrtTimestamp() {
-        return System.currentTimeMillis();
+        return contextManager.getContext().timeUnit.convert(Clock.currentTimeNanos(), TimeUnit.NANOSECONDS);
     }
 
     @Attribute
-    public long getMaintenanceDelay() {
-        return this.engine.getMaintenanceDelay();
+    public String getTimeUnit() {
+        return contextManager.getContext().timeUnit.name();
     }
 
+    /**
+     * @param timeUnit MILLISECONDS|MICROSECONDS|NANOSECONDS
+     */
     @Attribute
-    @StateMachine(deniedStates = DeviceState.RUNNING)
-    public void setMaintenanceDelay(long newDelay) {
-        this.engine.setMaintenanceDelay(newDelay);
+    public void setTimeUnit(String timeUnit) {
+        TimeUnit value = TimeUnit.valueOf(timeUnit.toUpperCase());
+        if (value.compareTo(TimeUnit.MILLISECONDS) > 0)
+            throw new IllegalArgumentException("Time unit must not be coarser than MILLISECONDS: " + timeUnit);
+        contextManager.getContext().timeUnit = value;
+    }
+
+    /**
+     * @return ms
+     */
+    @Attribute
+    public long getRetention() {
+        return this.engine.getEviction().getRetention();
+    }
+
+    @Attribute
+    public void setRetention(long retention) {
+        this.engine.getEviction().setRetention(retention);
+    }
+
+    /**
+     * @return MB, 0 - unlimited
+     */
+    @Attribute
+    public long getMemoryBudget() {
+        long memoryBudget = this.engine.getEviction().getMemoryBudget();
+        return memoryBudget == EvictionTask.UNLIMITED ? 0L : memoryBudget / 1024 / 1024;
+    }
+
+    @Attribute
+    public void setMemoryBudget(long memoryBudget) {
+        this.engine.getEviction().setMemoryBudget(memoryBudget == 0L ? EvictionTask.UNLIMITED : memoryBudget * 1024 * 1024);
+    }
+
+    /**
+     * @return <attribute-name>-><usage>/<quota> in bytes, quota 0 - no quota
+     */
+    @Attribute
+    public String[] getMemoryUsage() {
+        AllRecords allRecords = this.engine.getStorage().getAllRecords();
+        List<String> result = new ArrayList<>();
+        for (wpn.hdri.ss.data2.Attribute<?> attr : engine.getAttributes()) {
+            result.add(attr.fullName + "->" + allRecords.getMemoryUsage(attr) + "/" + allRecords.getQuota(attr));
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * @return number of collected records that share their read timestamp with the previous one
+     */
+    @Attribute
+    public long getCollisions() {
+        return this.engine.getStorage().getAllRecords().getCollisions();
+    }
+
+    @Attribute
+    public String[] getEvictionStats() {
+        EvictionTask eviction = this.engine.getEviction();
+        return new String[]{
+                "runs=" + eviction.getRuns(),
+                "droppedChunks=" + eviction.getDroppedChunks(),
+                "lastDurationUs=" + TimeUnit.NANOSECONDS.toMicros(eviction.getLastDuration()),
+                "avgDurationUs=" + TimeUnit.NANOSECONDS.toMicros(eviction.getAverageDuration()),
+                "maxDurationUs=" + TimeUnit.NANOSECONDS.toMicros(eviction.getMaxDuration()),
+                "memoryUsage=" + this.engine.getStorage().getAllRecords().getMemoryUsage()
+        };
+    }
+
+    @Attribute
+    public String[] getSchedule() {
+        List<String> schedule = this.engine.getSchedule();
+        return schedule.toArray(new String[schedule.size()]);
+    }
+
+    @Attribute
+    public String[] getEffectiveDelays() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Long> delay : this.engine.getEffectiveDelays().entrySet()) {
+            result.add(delay.getKey() + "->" + delay.getValue());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    @Attribute
+    public String[] getEventQueueStats() {
+        EventQueue events = this.engine.getEvents();
+        return new String[]{
+                "depth=" + events.getDepth(),
+                "maxDepth=" + events.getMaxDepth(),
+                "offered=" + events.getOffered(),
+                "written=" + events.getWritten(),
+                "coalesced=" + events.getCoalesced(),
+                "dropped=" + events.getDropped(),
+                "batches=" + events.getBatches()
+        };
+    }
+
+    @Attribute
+    public String[] getCircuitBreakers() {
+        List<String> result = new ArrayList<>();
+        for (CircuitBreaker breaker : this.engine.getCircuitBreakers()) {
+            result.add(breaker.getName() + "->" + breaker);
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    @Attribute
+    public String[] getPollStats() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, PollStats> stats : this.engine.getPollStats().entrySet()) {
+            result.add(stats.getKey() + "->" + stats.getValue());
+        }
+        return result.toArray(new String[result.size()]);
     }
 
     @Pipe(name = "status_server_pipe")
@@ -230,7 +366,7 @@ public class StatusServer2 {
         Context ctx = contextManager.getContext();
 
         long lastTimestamp = ctx.lastTimestamp;
-        ctx.lastTimestamp = System.currentTimeMillis();
+        ctx.lastTimestamp = Clock.currentTimeNanos();
 
         PipeValue value = new PipeValue(
                 (PipeBlob) OutputType.PIPE.toType(
@@ -254,6 +390,48 @@ public class StatusServer2 {
         contextManager.setGroup(new AttributesGroup(groupName, attributes));
     }
 
+    /**
+     * @param args device url, attribute name, method (poll|event), interpolation (last|nearest|linear),
+     *             delay in ms for poll or event type (change|periodic) for event, optional alias
+     * @return full name of the added attribute
+     */
+    @Command
+    public String addAttribute(String[] args) throws ClientException {
+        return engineFactory.addAttribute(engine, args[0], toDeviceAttribute(args)).fullName;
+    }
+
+    /**
+     * Collected records of the attribute are kept
+     *
+     * @param fullName device name/attribute name
+     */
+    @Command
+    public void removeAttribute(String fullName) {
+        engine.removeAttribute(fullName);
+    }
+
+    /**
+     * @param args same as for {@link #addAttribute(String[])}
+     */
+    @Command
+    public void changeAttribute(String[] args) {
+        engineFactory.changeAttribute(engine, args[0], toDeviceAttribute(args));
+    }
+
+    private static DeviceAttribute toDeviceAttribute(String[] args) {
+        if (args.length < 5)
+            throw new IllegalArgumentException("Expected: device url, attribute name, method, interpolation, delay or event type[, alias]");
+        DeviceAttribute result = new DeviceAttribute();
+        result.setName(args[1]);
+        Method method = Method.valueOf(args[2].toUpperCase());
+        result.setMethod(method);
+        result.setInterpolation(args[3]);
+        if (method == Method.POLL) result.setDelay(Long.parseLong(args[4]));
+        else result.setEventType(args[4]);
+        if (args.length > 5) result.setAlias(args[5]);
+        return result;
+    }
+
     @Command
     public void dumpData(final String outputFilePath){
         final Context ctx = contextManager.getContext();
@@ -286,9 +464,25 @@ public class StatusServer2 {
 
         Context ctx = contextManager.getContext();
 
-        Iterable<SingleRecord<?>> range = engine.getStorage().getAllRecords().getRange(t[0], t[1]);
-        FilteredRecords filteredRange = new FilteredRecords(contextManager.getGroup(), range);
-        return recordsToStrings(filteredRange, ctx);
+        Iterable<SingleRecord<?>> range = getGroupRange(toNanos(t[0], ctx), toNanos(t[1], ctx));
+        return recordsToStrings(range, ctx);
+    }
+
+    /**
+     * @param t timestamp in the client's time unit
+     * @return t in ns, the unit of r_t
+     */
+    private static long toNanos(long t, Context ctx) {
+        return ctx.timeUnit.toNanos(t);
+    }
+
+    /**
+     * Reads only columns of the attributes in the current group instead of filtering the whole range
+     */
+    private Iterable<SingleRecord<?>> getGroupRange(long t0, long t1) {
+        AttributesGroup group = contextManager.getGroup();
+        if (group.isDefault()) return engine.getStorage().getAllRecords().getRange(t0, t1);
+        else return engine.getStorage().getAllRecords().getRange(t0, t1, group.attributes);
     }
 
     private void checkRangeArguments(long[] t) {
@@ -302,8 +496,9 @@ public class StatusServer2 {
 
         final Context context = contextManager.getContext();
 
-        Iterable<SingleRecord<?>> range = engine.getStorage().getAllRecords().getRange(t[0], t[1]);
-        FilteredRecords records = new FilteredRecords(contextManager.getGroup(), range);
+        long t0 = toNanos(t[0], context);
+        long t1 = toNanos(t[1], context);
+        Iterable<SingleRecord<?>> records = getGroupRange(t0, t1);
 
 
         Map<String, InterpolationInputData> inputDataMap = Maps.newHashMap();
@@ -312,9 +507,9 @@ public class StatusServer2 {
         for(SingleRecord<?> record : records){
             String attributeFullName = record.attribute.fullName;//TODO possibly slow read from memory
 
-            InterpolationInputData inputData = inputDataMap.getOrDefault(attributeFullName, new InterpolationInputData(record.attribute));
+            InterpolationInputData inputData = inputDataMap.getOrDefault(attributeFullName, new InterpolationInputData(record.attribute, t0));
 
-            inputData.add((SingleRecord<Object>) record);//TODO avoid autoboxing
+            inputData.add(record);
 
             inputDataMap.putIfAbsent(attributeFullName, inputData);
         }
@@ -322,16 +517,17 @@ public class StatusServer2 {
         List<SingleRecord<?>> result = new ArrayList<>();
         LinearInterpolator interpolator = new LinearInterpolator();
 
-        long v = t[0] + ((t[1] - t[0]) / 2);
+        long v = t0 + ((t1 - t0) / 2);
         for(InterpolationInputData inputData : inputDataMap.values()){
             if(inputData.size() == 1){
                 result.add(inputData.records.get(0));
             } else {
+                //long and int attributes keep their record type, the value is truncated
                 result.add(
-                        new SingleRecord<>(
-                                (wpn.hdri.ss.data2.Attribute<Object>) inputData.attribute,
-                                v, v,
-                                interpolator.interpolate(inputData.x(), inputData.y()).value(v)));
+                        inputData.attribute.recordType.newRecord(
+                                inputData.attribute,
+                                v, TimeUnit.NANOSECONDS.toMillis(v),
+                                interpolator.interpolate(inputData.x(), inputData.y()).value(v - t0)));
             }
         }
 
@@ -341,13 +537,19 @@ public class StatusServer2 {
     private class InterpolationInputData {
         final wpn.hdri.ss.data2.Attribute<?> attribute;
 
+        /**
+         * x are relative to this, so that ns timestamps do not lose precision as doubles
+         */
+        final long origin;
+
         List<SingleRecord<?>> records = new ArrayList<>();
 
-        private InterpolationInputData(wpn.hdri.ss.data2.Attribute<?> attribute) {
+        private InterpolationInputData(wpn.hdri.ss.data2.Attribute<?> attribute, long origin) {
             this.attribute = attribute;
+            this.origin = origin;
         }
 
-        void add(SingleRecord<Object> record){
+        void add(SingleRecord<?> record){
             this.records.add(record);
         }
 
@@ -356,19 +558,17 @@ public class StatusServer2 {
                 @Nullable
                 @Override
                 public Number apply(@Nullable SingleRecord<?> input) {
-                    return Long.valueOf(input.r_t);
+                    return Long.valueOf(input.r_t - origin);
                 }
             }));
         }
 
         double[] y(){
-            return Doubles.toArray(Lists.transform(records, new Function<SingleRecord<?>, Number>() {
-                @Nullable
-                @Override
-                public Number apply(@Nullable SingleRecord<?> input) {
-                    return (Number) input.value;
-                }
-            }));
+            double[] result = new double[records.size()];
+            for (int i = 0; i < result.length; ++i) {
+                result[i] = records.get(i).doubleValue();
+            }
+            return result;
         }
 
         int size(){
@@ -390,9 +590,8 @@ public class StatusServer2 {
     public String[] getSnapshot(long t){
         Context ctx = contextManager.getContext();
 
-        Iterable<SingleRecord<?>> range = engine.getStorage().getAllRecords().getRange(t);
-        FilteredRecords filteredRange = new FilteredRecords(contextManager.getGroup(), range);
-        return recordsToStrings(filteredRange, ctx);
+        Iterable<SingleRecord<?>> range = getGroupRange(toNanos(t, ctx), Long.MAX_VALUE);
+        return recordsToStrings(range, ctx);
     }
 
     public void setStatus(String status) {
@@ -470,7 +669,7 @@ public class StatusServer2 {
                 @Override
                 public void setValue(AttributeValue value) throws DevFailed {
                     this.value = value;
-                    SingleRecord<Object> record = new SingleRecord(attr, System.currentTimeMillis(), value.getTime(), value.getValue());
+                    SingleRecord<?> record = attr.recordType.newRecord(attr, Clock.currentTimeNanos(), value.getTime(), value.getValue());
                     if (StatusServer2.this.getStatus() == StatusServerStatus.HEAVY_DUTY) {
                         engine.getStorage().appendRecord(record);
                     } else {
@@ -501,7 +700,8 @@ public class StatusServer2 {
 
         List<wpn.hdri.ss.data2.Attribute<?>> selfAttributes = initializeStatusServerAttributes(configuration, dynamicManager);
 
-        EngineFactory engineFactory = new EngineFactory(selfAttributes, configuration);
+        close();
+        this.engineFactory = new EngineFactory(devName, selfAttributes, configuration);
         this.engine = engineFactory.newEngine();
 
         this.contextManager = new ContextManager(engine.getAttributes(), engineFactory.getFailedAttributes());
@@ -515,6 +715,19 @@ public class StatusServer2 {
         }
     }
 
+    @Delete
+    public void delete() {
+        close();
+    }
+
+    /**
+     * Releases threads and connections of the current engine before it is replaced or the device is deleted
+     */
+    private void close() {
+        if (engine != null) engine.close();
+        if (engineFactory != null) engineFactory.close();
+    }
+
     //TODO the following must be refactored as decorators
     private static String[] recordsToStrings(Iterable<SingleRecord<?>> snapshot, final Context ctx) {
         return (String[]) ctx.outputType.toType(snapshot, ctx);
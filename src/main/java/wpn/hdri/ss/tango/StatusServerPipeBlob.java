@@ -19,6 +19,21 @@ public class StatusServerPipeBlob {
         blobBuilder.add(attrName, bld.build());
     }
 
+    /**
+     * @param values frames of a spectrum or an image one after another
+     * @param dimX frame width per record
+     * @param dimY frame height per record, 0 for spectra
+     */
+    public void add(String attrName, Object values, long[] times, int[] dimX, int[] dimY){
+        PipeBlobBuilder bld = new PipeBlobBuilder(attrName);
+        bld.add("value", values);
+        bld.add("time", times);
+        bld.add("dim_x", dimX);
+        bld.add("dim_y", dimY);
+
+        blobBuilder.add(attrName, bld.build());
+    }
+
     public PipeBlob asPipeBlob(){
         return blobBuilder.build();
     }
@@ -2,7 +2,17 @@ package wpn.hdri.ss.client;
 
 import org.junit.Test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
@@ -29,4 +39,114 @@ public class ClientFactoryTest {
 
         assertEquals("tango://tango_host:10000/sys/tg_test/1", result.getDeviceName());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getClient() throws Exception {
+        ClientFactory instance = new ClientFactory();
+
+        Client result = instance.getClient("tango://tango_host:10000/sys/tg_test/1");
+
+        assertSame(result, instance.getClient("TANGO://Tango_Host:10000/sys/TG_TEST/1/"));
+        assertNotSame(result, instance.getClient("tango://tango_host:10000/sys/tg_test/2"));
+        assertEquals(2, instance.getClients().size());
+    }
+
+    @Test
+    public void getClient_tineFragment() throws Exception {
+        ClientFactory instance = new ClientFactory();
+
+        Client result = instance.getClient("tine:/PETRA/Globals/#keyword");
+
+        assertSame(result, instance.getClient("tine:/PETRA/Globals/#keyword"));
+        assertNotSame(result, instance.getClient("tine:/PETRA/Globals/#other"));
+        assertEquals(2, instance.getClients().size());
+    }
+
+    @Test(timeout = 1000L)
+    public void getClient_requestsPerDevice() throws Exception {
+        ClientFactory instance = new ClientFactory(0, 1, 0L);
+
+        Client first = instance.getClient("tango://tango_host:10000/sys/tg_test/1");
+        Client second = instance.getClient("tango://tango_host:10000/sys/tg_test/2");
+
+        first.acquire();
+        second.acquire();
+        second.release();
+        first.release();
+    }
+
+    @Test(timeout = 10000L)
+    public void getClient_requestsPerHost() throws Exception {
+        ClientFactory instance = new ClientFactory(1, 0, 0L);
+
+        Client first = instance.getClient("tango://tango_host:10000/sys/tg_test/1");
+        final Client second = instance.getClient("tango://tango_host:10000/sys/tg_test/2");
+        final CountDownLatch acquired = new CountDownLatch(1);
+
+        first.acquire();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    second.acquire();
+                    acquired.countDown();
+                    second.release();
+                } catch (ClientException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        assertFalse(acquired.await(100L, TimeUnit.MILLISECONDS));
+        first.release();
+        assertTrue(acquired.await(10L, TimeUnit.SECONDS));
+        //other hosts are not limited
+        instance.getClient("tango://other_host:10000/sys/tg_test/1").acquire();
+    }
+
+    @Test
+    public void getHost() throws Exception {
+        assertEquals("tango://tango_host:10000", ClientFactory.getHost(ClientFactory.normalize("tango://Tango_Host:10000/sys/tg_test/1")));
+        assertEquals("tine:/PETRA/Idc", ClientFactory.getHost(ClientFactory.normalize("tine:/PETRA/Idc/Buffer-0/I.SCH")));
+    }
+
+    @Test(timeout = 10000L)
+    public void getClient_blockingRequestsBounded() throws Exception {
+        ClientFactory instance = new ClientFactory();
+        Client client = instance.getClient("tango://tango_host:10000/sys/tg_test/1");
+        final CountDownLatch busy = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < ClientFactory.BLOCKING_REQUEST_THREADS + ClientFactory.BLOCKING_REQUEST_QUEUE; ++i) {
+                client.callBlocking(() -> {
+                    busy.await();
+                    return null;
+                });
+            }
+
+            CompletableFuture<Object> result = client.callBlocking(() -> null);
+
+            assertTrue(result.isCompletedExceptionally());
+            try {
+                result.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ClientException);
+            }
+        } finally {
+            busy.countDown();
+            instance.close();
+        }
+    }
+
+    @Test
+    public void close() throws Exception {
+        ClientFactory instance = new ClientFactory(0, 0, 60000L);
+
+        Client result = instance.getClient("tango://tango_host:10000/sys/tg_test/1");
+        instance.close();
+
+        assertTrue(instance.getClients().isEmpty());
+        assertNotSame(result, instance.getClient("tango://tango_host:10000/sys/tg_test/1"));
+    }
+}
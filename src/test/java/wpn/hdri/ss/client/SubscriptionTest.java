@@ -0,0 +1,82 @@
+package wpn.hdri.ss.client;
+
+import org.junit.Test;
+import wpn.hdri.ss.data2.Attribute;
+import wpn.hdri.ss.data2.Interpolation;
+import wpn.hdri.ss.engine2.EventTask;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class SubscriptionTest {
+    private final Attribute<Object> attr0 = new Attribute<>(0, null, 0L, null, Object.class, null, null, null, Interpolation.LAST);
+    private final Attribute<Object> attr1 = new Attribute<>(1, null, 0L, null, Object.class, null, null, null, Interpolation.LAST);
+
+    @Test
+    public void testAddRemove() throws Exception {
+        Subscription instance = new Subscription();
+        EventTask storage = new EventTask(attr0, null, false);
+        EventTask derived = new EventTask(attr1, null, false);
+
+        assertTrue(instance.add(storage));
+        assertTrue(instance.add(derived));
+        assertArrayEquals(new EventTask[]{storage, derived}, instance.getConsumers());
+
+        assertFalse(instance.remove(attr0));
+        assertArrayEquals(new EventTask[]{derived}, instance.getConsumers());
+        assertFalse(instance.isClosed());
+
+        assertTrue(instance.remove(attr1));
+        assertTrue(instance.isClosed());
+        assertArrayEquals(new EventTask[0], instance.getConsumers());
+    }
+
+    @Test
+    public void testAddToClosed() throws Exception {
+        Subscription instance = new Subscription();
+        instance.add(new EventTask(attr0, null, false));
+        instance.remove(attr0);
+
+        assertFalse(instance.add(new EventTask(attr1, null, false)));
+        assertFalse(instance.remove(attr1));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        Subscription instance = new Subscription();
+        EventTask storage = new EventTask(attr0, null, false);
+        instance.add(storage);
+
+        assertArrayEquals(new EventTask[]{storage}, instance.close());
+        assertTrue(instance.isClosed());
+        assertArrayEquals(new EventTask[0], instance.close());
+    }
+
+    @Test(timeout = 10000)
+    public void testAwaitReleased() throws Exception {
+        final Subscription instance = new Subscription();
+        instance.add(new EventTask(attr0, null, false));
+        instance.remove(attr0);
+        final CountDownLatch released = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                instance.awaitReleased();
+                released.countDown();
+            }
+        });
+        waiter.start();
+
+        assertFalse(released.await(100L, TimeUnit.MILLISECONDS));
+        instance.release();
+        assertTrue(released.await(10L, TimeUnit.SECONDS));
+    }
+}
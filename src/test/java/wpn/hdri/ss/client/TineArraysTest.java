@@ -0,0 +1,57 @@
+package wpn.hdri.ss.client;
+
+import de.desy.tine.dataUtils.TDataType;
+import de.desy.tine.definitions.TFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class TineArraysTest {
+
+    @Test
+    public void getValueClass() {
+        assertSame(float.class, TineArrays.getValueClass(1, TFormat.CF_FLOAT));
+        assertSame(float[].class, TineArrays.getValueClass(4, TFormat.CF_FLOAT));
+        assertSame(String.class, TineArrays.getValueClass(16, TFormat.CF_TEXT));
+    }
+
+    @Test
+    public void getValue_scalar() {
+        TDataType dout = new TDataType(1, TFormat.CF_FLOAT);
+        dout.putData(new float[]{3.14F});
+
+        assertEquals(3.14F, TineArrays.getValue(float.class, dout, null));
+    }
+
+    @Test
+    public void getValue_array() {
+        TDataType dout = new TDataType(4, TFormat.CF_FLOAT);
+        dout.putData(new float[]{1.F, 2.F, 3.F, 4.F});
+
+        float[] first = (float[]) TineArrays.getValue(float[].class, dout, null);
+        assertArrayEquals(new float[]{1.F, 2.F, 3.F, 4.F}, first, 0.F);
+        assertNotSame(dout.getDataObject(), first);
+
+        assertSame(first, TineArrays.getValue(float[].class, dout, first));
+
+        dout.putData(new float[]{1.F, 2.F, 3.F, 5.F});
+        float[] second = (float[]) TineArrays.getValue(float[].class, dout, first);
+        assertArrayEquals(new float[]{1.F, 2.F, 3.F, 5.F}, second, 0.F);
+        assertArrayEquals(new float[]{1.F, 2.F, 3.F, 4.F}, first, 0.F);
+    }
+
+    @Test
+    public void getValue_text() {
+        TDataType dout = new TDataType(16, TFormat.CF_TEXT);
+        dout.putData("status".toCharArray());
+
+        assertEquals("status", TineArrays.getValue(String.class, dout, null));
+    }
+}
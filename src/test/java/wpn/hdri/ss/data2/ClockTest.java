@@ -0,0 +1,24 @@
+package wpn.hdri.ss.data2;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class ClockTest {
+    @Test
+    public void testCurrentTimeNanos() {
+        long before = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - 1000L);
+        long t0 = Clock.currentTimeNanos();
+        long t1 = Clock.currentTimeNanos();
+        long after = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() + 1000L);
+
+        assertTrue(t0 <= t1);
+        assertTrue(before < t0 && t1 < after);
+    }
+}
@@ -0,0 +1,43 @@
+package wpn.hdri.ss.data2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class InterpolationTest {
+    private static final Attribute<Double> DOUBLE_ATTR =
+            new Attribute<>(0, null, 0L, null, Double.class, "dbl", "test/dbl", "dbl", Interpolation.LINEAR);
+
+    @Test
+    public void testLinear_double() {
+        SingleRecord<Double> result = Interpolation.LINEAR.interpolate(
+                new DoubleRecord(DOUBLE_ATTR, 100L, 100L, 1.D),
+                new DoubleRecord(DOUBLE_ATTR, 200L, 200L, 2.D), 150L);
+
+        assertTrue(result instanceof DoubleRecord);
+        assertEquals(150L, result.r_t);
+        assertEquals(1.5D, result.doubleValue(), 0.D);
+    }
+
+    @Test
+    public void testLinear_notNumber() {
+        SingleRecord<Object> left = new SingleRecord<>((Attribute<Object>) Attributes.ATTR0, 100L, 100L, "left");
+        SingleRecord<Object> right = new SingleRecord<>((Attribute<Object>) Attributes.ATTR0, 200L, 200L, "right");
+
+        assertSame(right, Interpolation.LINEAR.interpolate(left, right, 160L));
+    }
+
+    @Test
+    public void testRecordType() {
+        assertSame(RecordType.DOUBLE, DOUBLE_ATTR.recordType);
+        assertSame(RecordType.LONG, RecordType.forClass(long.class));
+        assertSame(RecordType.INT, RecordType.forClass(Integer.class));
+        assertSame(RecordType.OBJECT, RecordType.forClass(float.class));
+    }
+}
@@ -0,0 +1,92 @@
+package wpn.hdri.ss.data2;
+
+import com.google.common.collect.Iterables;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class MappedStorageTest {
+    private static final Attribute<Double> DOUBLE_ATTR =
+            new Attribute<>(0, null, 0L, null, Double.class, "dbl", "test/dbl", "dbl", Interpolation.LAST);
+    private static final Attribute<Long> LONG_ATTR =
+            new Attribute<>(1, null, 0L, null, Long.class, "lng", "test/lng", "lng", Interpolation.LAST);
+
+    private static final int SIZE = MappedStorage.SEGMENT_SIZE + 10;
+
+    private File root;
+    private AllRecords instance;
+
+    /**
+     * Setup instance: dblxSIZE;lngx1
+     */
+    @Before
+    public void before() throws Exception {
+        root = Files.createTempDirectory("mapped-storage").toFile();
+        instance = new AllRecords(2, new MappedStorage(root));
+
+        for (int i = 0; i < SIZE; ++i) {
+            instance.add(new DoubleRecord(DOUBLE_ATTR, i * 10L, i * 10L, i * 0.5D));
+        }
+        instance.add(new LongRecord(LONG_ATTR, 15L, 15L, 1234L));
+    }
+
+    @After
+    public void after() {
+        instance.clear();
+        for (File dir : root.listFiles()) {
+            dir.delete();
+        }
+        root.delete();
+    }
+
+    @Test
+    public void testGetRange_acrossSegments() {
+        long t = (MappedStorage.SEGMENT_SIZE - 1) * 10L;
+        Iterator<SingleRecord<?>> result = instance.getRange(t, t + 10L).iterator();
+
+        SingleRecord<?> record = result.next();
+        assertTrue(record instanceof DoubleRecord);
+        assertEquals(new DoubleRecord(DOUBLE_ATTR, t, 0L, (MappedStorage.SEGMENT_SIZE - 1) * 0.5D), record);
+        assertEquals(new DoubleRecord(DOUBLE_ATTR, t + 10L, 0L, MappedStorage.SEGMENT_SIZE * 0.5D), result.next());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    public void testGetSnapshot() {
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new DoubleRecord(DOUBLE_ATTR, 20L, 0L, 1.D),
+                new LongRecord(LONG_ATTR, 15L, 0L, 1234L)
+        ), instance.getSnapshot(25L)));
+    }
+
+    @Test
+    public void testGetSnapshots() {
+        Iterator<? extends Snapshot> result = instance.getSnapshots(10L, 15L).iterator();
+
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new DoubleRecord(DOUBLE_ATTR, 10L, 0L, 0.5D), null), result.next()));
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new DoubleRecord(DOUBLE_ATTR, 10L, 0L, 0.5D),
+                new LongRecord(LONG_ATTR, 15L, 0L, 1234L)), result.next()));
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    public void testClear_deletesSegments() {
+        instance.clear(MappedStorage.SEGMENT_SIZE * 10L);
+
+        assertEquals(1, new File(root, "0").listFiles().length);
+        assertEquals(MappedStorage.SEGMENT_SIZE * 10L, instance.getRange().iterator().next().r_t);
+    }
+}
@@ -0,0 +1,220 @@
+package wpn.hdri.ss.data2;
+
+import com.google.common.collect.Iterables;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class RecordsColumnTest {
+    private static final int SIZE = RecordsColumn.CHUNK_SIZE * 3 + 10;
+
+    private RecordsColumn instance;
+
+    @Before
+    public void before() {
+        instance = new RecordsColumn(Attributes.ATTR0);
+
+        for (int i = 0; i < SIZE; ++i) {
+            instance.append(new SingleRecord(Attributes.ATTR0, i * 10L, i * 10L, 1234L));
+        }
+    }
+
+    @Test
+    public void testAppend_sameWriteTimestamp() {
+        assertFalse(instance.append(new SingleRecord(Attributes.ATTR0, SIZE * 10L, (SIZE - 1) * 10L, 1234L)));
+    }
+
+    @Test
+    public void testRange_acrossChunks() {
+        RecordsColumn.Cursor cursor = instance.range(10230L, 10250L);
+
+        assertTrue(cursor.hasNext());
+        assertEquals(new SingleRecord(null, 10230L, 0L, 1234L), cursor.next());
+        assertTrue(cursor.hasNext());
+        assertEquals(new SingleRecord(null, 10240L, 0L, 1234L), cursor.next());
+        assertTrue(cursor.hasNext());
+        assertEquals(new SingleRecord(null, 10250L, 0L, 1234L), cursor.next());
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testClear() {
+        instance.clear(20475L);
+
+        RecordsColumn.Cursor cursor = instance.range(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertTrue(cursor.hasNext());
+        assertEquals(20480L, cursor.peek());
+    }
+
+    @Test
+    public void testRange_beforeFirst() {
+        RecordsColumn.Cursor cursor = instance.range(-100L, 5L);
+
+        assertTrue(cursor.hasNext());
+        assertEquals(0L, cursor.peek());
+        cursor.next();
+        assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testRange_afterLast() {
+        assertFalse(instance.range(SIZE * 10L, Long.MAX_VALUE).hasNext());
+    }
+
+    @Test
+    public void testAllRecords_getRangeOfAttributes() {
+        AllRecords records = new AllRecords(3);
+
+        records.add(new SingleRecord(Attributes.ATTR0, 100L, 100L, 1234L));
+        records.add(new SingleRecord(Attributes.ATTR1, 110L, 110L, 3.14D));
+        records.add(new SingleRecord(Attributes.ATTR2, 120L, 120L, 789L));
+        records.add(new SingleRecord(Attributes.ATTR0, 130L, 130L, 1235L));
+
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new SingleRecord(Attributes.ATTR0, 100L, 0L, 1234L),
+                new SingleRecord(Attributes.ATTR2, 120L, 0L, 789L),
+                new SingleRecord(Attributes.ATTR0, 130L, 0L, 1235L)
+        ), records.getRange(0L, 200L, Arrays.asList(Attributes.ATTR2, Attributes.ATTR0))));
+    }
+
+    @Test
+    public void testAllRecords_evictByAge() {
+        AllRecords records = newAllRecords();
+
+        assertEquals(1, records.evict(20480L, Long.MAX_VALUE, 1));
+        assertEquals(1, records.evict(20480L, Long.MAX_VALUE, 64));
+        assertEquals(20480L, records.getRange().iterator().next().r_t);
+    }
+
+    @Test
+    public void testAllRecords_evictByAgeWithinChunk() {
+        AllRecords records = new AllRecords(2);
+        records.add(new SingleRecord(Attributes.ATTR0, 10L, 10L, 1234L));
+        records.add(new SingleRecord(Attributes.ATTR0, 20L, 20L, 1235L));
+
+        //the only chunk is being written, so it stays but its expired record is gone
+        assertEquals(0, records.evict(15L, Long.MAX_VALUE, 64));
+        assertEquals(new SingleRecord(Attributes.ATTR0, 20L, 0L, 1235L), records.getRange().iterator().next());
+    }
+
+    @Test
+    public void testAllRecords_evictByMemoryBudget() {
+        AllRecords records = newAllRecords();
+        long usage = records.getMemoryUsage();
+
+        assertEquals(3, records.evict(Long.MIN_VALUE, 0L, 64));
+        assertTrue(records.getMemoryUsage() < usage);
+        assertEquals(30720L, records.getRange().iterator().next().r_t);
+    }
+
+    @Test
+    public void testAllRecords_evictByQuota() {
+        AllRecords records = newAllRecords();
+        records.add(new SingleRecord(Attributes.ATTR1, 10L, 10L, 3.14D));
+        records.setQuota(Attributes.ATTR0, 2 * records.getMemoryUsage(Attributes.ATTR0) / 4);
+
+        assertEquals(2, records.evict(Long.MIN_VALUE, Long.MAX_VALUE, 64));
+        assertEquals(new SingleRecord(Attributes.ATTR1, 10L, 0L, 3.14D), records.getRange().iterator().next());
+        assertEquals(20480L, records.getRange(0L, Long.MAX_VALUE, Arrays.asList(Attributes.ATTR0)).iterator().next().r_t);
+    }
+
+    private static AllRecords newAllRecords() {
+        AllRecords records = new AllRecords(2);
+        for (int i = 0; i < SIZE; ++i) {
+            records.add(new SingleRecord(Attributes.ATTR0, i * 10L, i * 10L, 1234L));
+        }
+        return records;
+    }
+
+    @Test
+    public void testAllRecords_sameReadTimestamp() {
+        AllRecords records = new AllRecords(2);
+
+        records.add(new SingleRecord(Attributes.ATTR1, 100L, 100L, 3.14D));
+        records.add(new SingleRecord(Attributes.ATTR0, 100L, 100L, 1234L));
+        records.add(new SingleRecord(Attributes.ATTR0, 100L, 101L, 1235L));
+
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new SingleRecord(Attributes.ATTR0, 100L, 0L, 1234L),
+                new SingleRecord(Attributes.ATTR0, 100L, 0L, 1235L),
+                new SingleRecord(Attributes.ATTR1, 100L, 0L, 3.14D)
+        ), records.getRange(0L, 200L)));
+        assertEquals(2L, records.getCollisions());
+    }
+
+    private static final Attribute<Object> ARRAY_ATTR =
+            new Attribute<>(2, null, 0L, null, Object.class, null, "test/array", "array", Interpolation.LAST, RecordType.ARRAY);
+
+    @Test
+    public void testArrays_compressed() {
+        RecordsColumn column = new RecordsColumn(ARRAY_ATTR, null, true);
+        double[][] frames = new double[40][];
+        for (int i = 0; i < frames.length; ++i) {
+            frames[i] = new double[256];
+            for (int j = 0; j < 256; ++j) frames[i][j] = Math.sin(j / 10.D) + (j == i ? i : 0.D);
+            column.append(new ArrayRecord(ARRAY_ATTR, i * 10L, i * 10L, frames[i], 256, 0));
+        }
+
+        RecordsColumn.Cursor cursor = column.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        for (double[] frame : frames) {
+            assertTrue(cursor.hasNext());
+            ArrayRecord record = (ArrayRecord) cursor.next();
+            assertArrayEquals(frame, (double[]) record.getValue(), 0.D);
+            assertEquals(256, record.dimX);
+        }
+        assertFalse(cursor.hasNext());
+
+        assertArrayEquals(frames[25], (double[]) column.floor(255L).getValue(), 0.D);
+    }
+
+    @Test
+    public void testArrays_image() {
+        RecordsColumn column = new RecordsColumn(ARRAY_ATTR, null, true);
+        column.append(RecordType.ARRAY.newRecord(ARRAY_ATTR, 10L, 10L, new int[][]{{-1, 2, -3}, {4, -5, 6}}));
+        column.append(RecordType.ARRAY.newRecord(ARRAY_ATTR, 20L, 20L, new int[][]{{-1, 2, -3}, {4, -5, 7}}));
+
+        ArrayRecord result = (ArrayRecord) column.floor(20L);
+
+        assertArrayEquals(new int[]{-1, 2, -3, 4, -5, 7}, (int[]) result.getValue());
+        assertEquals(3, result.dimX);
+        assertEquals(2, result.dimY);
+    }
+
+    @Test
+    public void testArrays_typeChangeStartsNewChunk() {
+        RecordsColumn column = new RecordsColumn(ARRAY_ATTR, null, false);
+        column.append(RecordType.ARRAY.newRecord(ARRAY_ATTR, 10L, 10L, new float[]{1.F, 2.F}));
+        long bytes = column.getMemoryUsage();
+        column.append(RecordType.ARRAY.newRecord(ARRAY_ATTR, 20L, 20L, new short[]{1, 2}));
+
+        assertEquals(2 * bytes, column.getMemoryUsage());
+        assertArrayEquals(new float[]{1.F, 2.F}, (float[]) column.floor(10L).getValue(), 0.F);
+        assertArrayEquals(new short[]{1, 2}, (short[]) column.floor(20L).getValue());
+    }
+
+    @Test
+    public void testArrays_compressionSavesMemory() {
+        RecordsColumn raw = new RecordsColumn(ARRAY_ATTR, null, false);
+        RecordsColumn compressed = new RecordsColumn(ARRAY_ATTR, null, true);
+        for (int i = 0; i < 100; ++i) {
+            double[] frame = new double[2048];
+            frame[i] = i;
+            raw.append(new ArrayRecord(ARRAY_ATTR, i * 10L, i * 10L, frame, 2048, 0));
+            compressed.append(new ArrayRecord(ARRAY_ATTR, i * 10L, i * 10L, frame, 2048, 0));
+        }
+
+        assertTrue(compressed.getMemoryUsage() < raw.getMemoryUsage());
+        assertEquals(99.D, ((double[]) compressed.floor(990L).getValue())[99], 0.D);
+    }
+}
@@ -0,0 +1,95 @@
+package wpn.hdri.ss.data2;
+
+import com.google.common.collect.Iterables;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class SnapshotHistoryTest {
+    private SnapshotHistory instance;
+
+    /**
+     * Setup instance with keyframe every 2 records: attr0x4;attr1x2
+     */
+    @Before
+    public void before() {
+        instance = new SnapshotHistory(2, 2);
+
+        instance.add(new SingleRecord(Attributes.ATTR0, 100L, 100L, 1234L));
+        instance.add(new SingleRecord(Attributes.ATTR1, 150L, 150L, 3.14D));
+        instance.add(new SingleRecord(Attributes.ATTR0, 200L, 200L, 1235L));
+        instance.add(new SingleRecord(Attributes.ATTR0, 300L, 300L, 1236L));
+        instance.add(new SingleRecord(Attributes.ATTR1, 350L, 350L, 3.15D));
+        instance.add(new SingleRecord(Attributes.ATTR0, 400L, 400L, 1237L));
+    }
+
+    @Test
+    public void testGetState() {
+        SingleRecord<?>[] result = instance.getState(320L);
+
+        assertArrayEquals(new SingleRecord[]{
+                new SingleRecord(Attributes.ATTR0, 300L, 0L, 1236L),
+                new SingleRecord(Attributes.ATTR1, 150L, 0L, 3.14D)
+        }, result);
+    }
+
+    @Test
+    public void testGetState_beforeFirst() {
+        SingleRecord<?>[] result = instance.getState(50L);
+
+        assertArrayEquals(new SingleRecord[2], result);
+    }
+
+    @Test
+    public void testGetSnapshots() {
+        Iterator<Snapshot> result = instance.getSnapshots(200L, 350L).iterator();
+
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new SingleRecord(Attributes.ATTR0, 200L, 0L, 1235L),
+                new SingleRecord(Attributes.ATTR1, 150L, 0L, 3.14D)), result.next()));
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new SingleRecord(Attributes.ATTR0, 300L, 0L, 1236L),
+                new SingleRecord(Attributes.ATTR1, 150L, 0L, 3.14D)), result.next()));
+        assertTrue(Iterables.elementsEqual(Arrays.asList(
+                new SingleRecord(Attributes.ATTR0, 300L, 0L, 1236L),
+                new SingleRecord(Attributes.ATTR1, 350L, 0L, 3.15D)), result.next()));
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    public void testClear() {
+        instance.clear(320L);
+
+        SingleRecord<?>[] result = instance.getState(0L);
+
+        assertArrayEquals(new SingleRecord[]{
+                new SingleRecord(Attributes.ATTR0, 100L, 0L, 1234L),
+                new SingleRecord(Attributes.ATTR1, 150L, 0L, 3.14D)
+        }, result);
+    }
+
+    @Test
+    public void testGrow() {
+        instance.grow(3);
+        instance.add(new SingleRecord(Attributes.ATTR2, 450L, 450L, 42L));
+
+        assertEquals(2, instance.getState(420L).length);
+        assertArrayEquals(new SingleRecord[]{
+                new SingleRecord(Attributes.ATTR0, 400L, 0L, 1237L),
+                new SingleRecord(Attributes.ATTR1, 350L, 0L, 3.15D),
+                new SingleRecord(Attributes.ATTR2, 450L, 0L, 42L)
+        }, instance.getState(450L));
+
+        Snapshot last = Iterables.getLast(instance.getSnapshots(400L, 450L));
+        assertEquals(3, last.size());
+        assertEquals(new SingleRecord(Attributes.ATTR2, 450L, 0L, 42L), last.get(2));
+    }
+}
@@ -0,0 +1,65 @@
+package wpn.hdri.ss.data2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class SnapshotTest {
+    private Snapshot instance;
+    private long[] lastSequences;
+
+    @Before
+    public void before() {
+        instance = new Snapshot(3);
+        lastSequences = new long[instance.size()];
+
+        instance.update(new SingleRecord(Attributes.ATTR0, 100L, 100L, 1234L));
+        instance.update(new SingleRecord(Attributes.ATTR1, 110L, 110L, 3.14D));
+    }
+
+    @Test
+    public void testGetUpdates() {
+        assertEquals(Arrays.asList(
+                new SingleRecord(Attributes.ATTR0, 100L, 0L, 1234L),
+                new SingleRecord(Attributes.ATTR1, 110L, 0L, 3.14D)), instance.getUpdates(lastSequences));
+        assertTrue(instance.getUpdates(lastSequences).isEmpty());
+
+        instance.update(new SingleRecord(Attributes.ATTR1, 120L, 120L, 3.15D));
+
+        assertEquals(Collections.singletonList(
+                new SingleRecord(Attributes.ATTR1, 120L, 0L, 3.15D)), instance.getUpdates(lastSequences));
+    }
+
+    @Test
+    public void testGetUpdates_attributes() {
+        assertEquals(Collections.singletonList(
+                new SingleRecord(Attributes.ATTR1, 110L, 0L, 3.14D)), instance.getUpdates(lastSequences, Arrays.asList(Attributes.ATTR1, Attributes.ATTR2)));
+        assertEquals(Collections.singletonList(
+                new SingleRecord(Attributes.ATTR0, 100L, 0L, 1234L)), instance.getUpdates(lastSequences));
+    }
+
+    @Test
+    public void testGrow() {
+        instance.getUpdates(lastSequences);
+
+        instance.grow(4);
+        Attribute<?> attr3 = new Attribute<Object>(3);
+        instance.update(new SingleRecord(attr3, 130L, 130L, 42L));
+
+        assertEquals(4, instance.size());
+        assertEquals(new SingleRecord(Attributes.ATTR1, 110L, 0L, 3.14D), instance.get(1));
+        //old array does not see the new slot
+        assertTrue(instance.getUpdates(lastSequences).isEmpty());
+        assertEquals(Collections.singletonList(
+                new SingleRecord(attr3, 130L, 0L, 42L)), instance.getUpdates(Arrays.copyOf(lastSequences, 4)));
+    }
+}
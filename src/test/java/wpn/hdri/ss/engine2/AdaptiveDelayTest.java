@@ -0,0 +1,78 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class AdaptiveDelayTest {
+
+    @Test
+    public void testBackoff() {
+        AdaptiveDelay instance = new AdaptiveDelay(100L, 400L, 2);
+
+        //the first read sets the initial w_t, then every 2 unchanged reads double the delay
+        read(instance, 1L);
+        read(instance, 1L);
+        assertEquals(100L, instance.getDelay());
+        read(instance, 1L);
+        assertEquals(200L, instance.getDelay());
+        read(instance, 1L);
+        read(instance, 1L);
+        assertEquals(400L, instance.getDelay());
+        read(instance, 1L);
+        read(instance, 1L);
+        assertEquals(400L, instance.getDelay());
+    }
+
+    @Test
+    public void testIsDue() {
+        AdaptiveDelay instance = new AdaptiveDelay(100L, 400L, 1);
+        read(instance, 1L);
+        read(instance, 1L);
+        assertEquals(200L, instance.getDelay());
+
+        //the next tick was counted with the old delay
+        assertTrue(instance.isDue());
+        assertFalse(instance.isDue());
+        assertTrue(instance.isDue());
+        assertFalse(instance.isDue());
+    }
+
+    @Test
+    public void testReset() {
+        AdaptiveDelay instance = new AdaptiveDelay(100L, 400L, 1);
+        read(instance, 1L);
+        read(instance, 1L);
+        read(instance, 1L);
+        assertEquals(400L, instance.getDelay());
+
+        instance.onRead(2L);
+
+        assertEquals(100L, instance.getDelay());
+        assertTrue(instance.isDue());
+        assertTrue(instance.isDue());
+    }
+
+    @Test
+    public void testMaxDelayBelowDelay() {
+        AdaptiveDelay instance = new AdaptiveDelay(100L, 50L, 1);
+        read(instance, 1L);
+        read(instance, 1L);
+
+        assertEquals(100L, instance.getDelay());
+    }
+
+    /**
+     * Ticks until the attribute is due and reads it
+     */
+    private static void read(AdaptiveDelay instance, long w_t) {
+        while (!instance.isDue()) ;
+        instance.onRead(w_t);
+    }
+}
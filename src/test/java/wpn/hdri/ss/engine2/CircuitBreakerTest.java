@@ -0,0 +1,89 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class CircuitBreakerTest {
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final CircuitBreaker instance = new CircuitBreaker(StubClient.URL, scheduler);
+
+    @After
+    public void after() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testStateMachine() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; ++i) {
+            assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+            assertTrue(instance.allowRequest());
+            instance.onFailure();
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, instance.getState());
+        assertFalse(instance.allowRequest());
+        assertEquals(1, scheduler.tasks.size());
+        assertEquals(CircuitBreaker.INITIAL_BACKOFF, (long) scheduler.delays.get(0));
+
+        scheduler.runNext();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, instance.getState());
+        assertTrue(instance.allowRequest());
+        //a single probe at a time
+        assertFalse(instance.allowRequest());
+
+        instance.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+        assertTrue(instance.allowRequest());
+        assertEquals(1L, instance.getOpened());
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; ++i) {
+            instance.onFailure();
+        }
+        instance.onSuccess();
+        instance.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+    }
+
+    @Test
+    public void testFailedProbeDoublesBackoff() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; ++i) {
+            instance.onFailure();
+        }
+        scheduler.runNext();
+        assertTrue(instance.allowRequest());
+
+        instance.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, instance.getState());
+        assertEquals(2 * CircuitBreaker.INITIAL_BACKOFF, (long) scheduler.delays.get(0));
+        assertEquals(2L, instance.getOpened());
+    }
+
+    @Test
+    public void testSkippedProbe() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; ++i) {
+            instance.onFailure();
+        }
+        scheduler.runNext();
+        assertTrue(instance.allowRequest());
+
+        instance.onSkipped();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, instance.getState());
+        assertTrue(instance.allowRequest());
+    }
+}
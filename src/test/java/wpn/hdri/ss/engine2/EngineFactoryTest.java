@@ -0,0 +1,186 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.After;
+import org.junit.Test;
+import wpn.hdri.ss.client.Client;
+import wpn.hdri.ss.client.ClientFactory;
+import wpn.hdri.ss.configuration.Device;
+import wpn.hdri.ss.configuration.DeviceAttribute;
+import wpn.hdri.ss.configuration.StatusServerAttribute;
+import wpn.hdri.ss.configuration.StatusServerConfiguration;
+import wpn.hdri.ss.data.Method;
+import wpn.hdri.ss.data2.Attribute;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class EngineFactoryTest {
+    private static final String URL = StubClient.URL;
+
+    private final StubClient client = new StubClient();
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final ClientFactory clientFactory = new ClientFactory() {
+        @Override
+        public Client createClient(String deviceUrl) {
+            return clients.get(deviceUrl);
+        }
+    };
+
+    private Engine engine;
+
+    @After
+    public void after() {
+        if (engine != null) engine.close();
+        clientFactory.close();
+    }
+
+    @Test
+    public void testNewEngine() {
+        client.values.put("double_scalar", 3.14D);
+        client.values.put("string_scalar", "value");
+        clients.put(URL, client);
+        EngineFactory instance = newInstance(newConfiguration(0L, "off", attribute("double_scalar"), attribute("string_scalar")));
+
+        engine = instance.newEngine();
+
+        assertEquals(Double.class, engine.getAttributeByName(URL + "/double_scalar").type);
+        assertEquals(String.class, engine.getAttributeByName(URL + "/string_scalar").type);
+        assertTrue(instance.getFailedAttributes().isEmpty());
+    }
+
+    @Test
+    public void testNewEngine_partialFailure() {
+        client.values.put("double_scalar", 3.14D);
+        clients.put(URL, client);
+        EngineFactory instance = newInstance(newConfiguration(0L, "off", attribute("double_scalar"), attribute("missing")));
+
+        engine = instance.newEngine();
+
+        assertEquals(1, engine.getAttributes().size());
+        assertEquals(Double.class, engine.getAttributeByName(URL + "/double_scalar").type);
+        assertEquals(Collections.singletonList(URL + "/missing"), instance.getFailedAttributes());
+    }
+
+    @Test
+    public void testNewEngine_deadline() {
+        client.values.put("double_scalar", 3.14D);
+        client.values.put("slow", 3.14D);
+        client.latencies.put("slow", 60000L);
+        clients.put(URL, client);
+        EngineFactory instance = newInstance(newConfiguration(200L, "off", attribute("double_scalar"), attribute("slow")));
+
+        long start = System.nanoTime();
+        engine = instance.newEngine();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 10000L);
+        assertEquals(Double.class, engine.getAttributeByName(URL + "/double_scalar").type);
+        assertEquals(Collections.singletonList(URL + "/slow"), instance.getFailedAttributes());
+    }
+
+    @Test
+    public void testNewEngine_metadataCache() throws Exception {
+        File dir = Files.createTempDirectory("metadata").toFile();
+        File file = new File(dir, "test.metadata");
+        try {
+            client.values.put("double_scalar", 3.14D);
+            clients.put(URL, client);
+            EngineFactory instance = newInstance(newConfiguration(0L, file.getAbsolutePath(), attribute("double_scalar")));
+
+            engine = instance.newEngine();
+
+            assertSame(Double.class, new MetadataCache(file).get(URL, "double_scalar"));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testNewEngine_staleMetadataCache() throws Exception {
+        File dir = Files.createTempDirectory("metadata").toFile();
+        File file = new File(dir, "test.metadata");
+        try {
+            MetadataCache cache = new MetadataCache(file);
+            cache.put(URL, "double_scalar", Long.class);
+            cache.save();
+            client.values.put("double_scalar", 3.14D);
+            //revalidation is slow, the engine must not wait for it
+            client.latencies.put("double_scalar", 2000L);
+            clients.put(URL, client);
+            EngineFactory instance = newInstance(newConfiguration(0L, file.getAbsolutePath(), attribute("double_scalar")));
+
+            long start = System.nanoTime();
+            engine = instance.newEngine();
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000L);
+            //cached type is used until the next start
+            assertSame(Long.class, engine.getAttributeByName(URL + "/double_scalar").type);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (new MetadataCache(file).get(URL, "double_scalar") != Double.class) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(10L);
+            }
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testNewEngine_metadataCacheRevalidationFails() throws Exception {
+        File dir = Files.createTempDirectory("metadata").toFile();
+        File file = new File(dir, "test.metadata");
+        try {
+            MetadataCache cache = new MetadataCache(file);
+            cache.put(URL, "double_scalar", Double.class);
+            cache.save();
+            //the device does not answer, the cached type is kept
+            clients.put(URL, client);
+            EngineFactory instance = newInstance(newConfiguration(0L, file.getAbsolutePath(), attribute("double_scalar")));
+
+            engine = instance.newEngine();
+
+            assertSame(Double.class, engine.getAttributeByName(URL + "/double_scalar").type);
+            assertTrue(instance.getFailedAttributes().isEmpty());
+            Thread.sleep(50L);
+            assertSame(Double.class, new MetadataCache(file).get(URL, "double_scalar"));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    EngineFactory newInstance(StatusServerConfiguration configuration) {
+        return new EngineFactory("test", new ArrayList<Attribute<?>>(), configuration, clientFactory);
+    }
+
+    static StatusServerConfiguration newConfiguration(long discoveryTimeout, String metadataCache, DeviceAttribute... attrs) {
+        Device device = new Device(URL, URL, Arrays.asList(attrs));
+        return new StatusServerConfiguration(false, null, null, 0L, 0L, null, 0L, 0, null, 0, 0, null, 0,
+                discoveryTimeout, metadataCache, 0, 0, 0L, false,
+                Collections.singletonList(device), new ArrayList<StatusServerAttribute>());
+    }
+
+    static DeviceAttribute attribute(String name) {
+        DeviceAttribute result = new DeviceAttribute();
+        result.setName(name);
+        result.setMethod(Method.POLL);
+        result.setInterpolation("last");
+        result.setDelay(1000L);
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.Test;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class EngineModeTest {
+    @Test
+    public void testNewTimer_scheduled() {
+        assertEquals(1, poolSize(EngineMode.SCHEDULED, 0));
+        assertEquals(3, poolSize(EngineMode.SCHEDULED, 3));
+        assertEquals(EngineMode.MAX_SCHEDULED_THREADS, poolSize(EngineMode.SCHEDULED, 10000));
+    }
+
+    @Test
+    public void testNewTimer_virtual() {
+        assertEquals(EngineMode.TIMER_THREADS, poolSize(EngineMode.VIRTUAL, 10000));
+    }
+
+    private static int poolSize(EngineMode mode, int pollingGroups) {
+        ScheduledThreadPoolExecutor timer = (ScheduledThreadPoolExecutor) mode.newTimer(pollingGroups);
+        try {
+            return timer.getCorePoolSize();
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.After;
+import org.junit.Test;
+import wpn.hdri.ss.data2.Attribute;
+import wpn.hdri.ss.data2.SingleRecord;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class EventQueueTest {
+    private final Attribute<Object> attr = new StubClient().newAttribute(0, "a", 0L);
+
+    private EventQueue instance;
+
+    @After
+    public void after() {
+        if (instance != null) instance.close();
+    }
+
+    @Test
+    public void testOffer_dropWhenFull() throws Exception {
+        final CountDownLatch written = new CountDownLatch(1);
+        DataStorage storage = new DataStorage(1) {
+            @Override
+            public void appendRecord(SingleRecord<?> record) {
+                try {
+                    written.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.appendRecord(record);
+            }
+        };
+        instance = new EventQueue(storage, 2, 1, false);
+
+        //the first record holds the writer, so the queue keeps its place until the batch is written
+        assertTrue(instance.offer(record(1L), true));
+        assertTrue(instance.offer(record(2L), true));
+        assertFalse(instance.offer(record(3L), true));
+        assertFalse(instance.offer(record(4L), true));
+
+        assertEquals(4L, instance.getOffered());
+        assertEquals(2L, instance.getDropped());
+        assertEquals(2, instance.getMaxDepth());
+
+        written.countDown();
+
+        assertTrue(instance.awaitDrained(1000L));
+        assertEquals(2L, instance.getWritten());
+        assertEquals(2L, storage.getSnapshot().get(0).w_t);
+    }
+
+    @Test
+    public void testOffer_coalesce() throws Exception {
+        DataStorage storage = new DataStorage(1);
+        instance = new EventQueue(storage, 16, 1, true);
+
+        instance.offer(record(1L), true);
+        instance.offer(record(1L), true);
+        instance.offer(record(2L), true);
+
+        assertTrue(instance.awaitDrained(1000L));
+        assertEquals(2L, instance.getWritten());
+        assertEquals(1L, instance.getCoalesced());
+    }
+
+    @Test
+    public void testOffer_noCoalescing() throws Exception {
+        instance = new EventQueue(new DataStorage(1), 16, 1, false);
+
+        instance.offer(record(1L), false);
+        instance.offer(record(1L), false);
+
+        assertTrue(instance.awaitDrained(1000L));
+        assertEquals(2L, instance.getWritten());
+        assertEquals(0L, instance.getCoalesced());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        DataStorage storage = new DataStorage(1);
+        instance = new EventQueue(storage, 16, 2, false);
+        instance.offer(record(1L), true);
+
+        instance.close();
+
+        assertFalse(instance.offer(record(2L), true));
+        assertTrue(instance.awaitDrained(1000L));
+        assertEquals(1L, storage.getSnapshot().get(0).w_t);
+        assertEquals(1L, instance.getOffered());
+    }
+
+    private SingleRecord<Object> record(long w_t) {
+        return new SingleRecord<>(attr, w_t, w_t, "value");
+    }
+}
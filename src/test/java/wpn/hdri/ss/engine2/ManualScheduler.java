@@ -0,0 +1,37 @@
+package wpn.hdri.ss.engine2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps scheduled tasks until the test runs them
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class ManualScheduler extends ScheduledThreadPoolExecutor {
+    public final List<Runnable> tasks = new ArrayList<>();
+    /**
+     * ms
+     */
+    public final List<Long> delays = new ArrayList<>();
+
+    public ManualScheduler() {
+        super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        tasks.add(command);
+        delays.add(unit.toMillis(delay));
+        return null;
+    }
+
+    public void runNext() {
+        delays.remove(0);
+        tasks.remove(0).run();
+    }
+}
@@ -0,0 +1,89 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class MetadataCacheTest {
+    private static final String URL = StubClient.URL;
+
+    private final File dir = createTempDir();
+    private final File file = new File(dir, "test.metadata");
+
+    @After
+    public void after() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testSave() {
+        MetadataCache instance = new MetadataCache(file);
+        instance.put(URL, "double_scalar", double.class);
+        instance.put(URL, "string_scalar", String.class);
+        instance.put(URL, "double_spectrum", double[].class);
+
+        instance.save();
+
+        MetadataCache result = new MetadataCache(file);
+        assertSame(double.class, result.get(URL, "double_scalar"));
+        assertSame(String.class, result.get(URL, "string_scalar"));
+        assertSame(double[].class, result.get(URL, "double_spectrum"));
+        assertNull(result.get(URL, "missing"));
+        assertFalse(new File(dir, "test.metadata.tmp").exists());
+    }
+
+    @Test
+    public void testSave_replacesType() {
+        MetadataCache instance = new MetadataCache(file);
+        instance.put(URL, "double_scalar", long.class);
+        instance.save();
+
+        instance.put(URL, "double_scalar", double.class);
+        instance.save();
+
+        assertSame(double.class, new MetadataCache(file).get(URL, "double_scalar"));
+    }
+
+    @Test
+    public void testGet_unknownClass() throws Exception {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write((URL.replace(":", "\\:") + "/attr=no.such.Type\n").getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        assertNull(new MetadataCache(file).get(URL, "attr"));
+    }
+
+    @Test
+    public void testNoFile() {
+        MetadataCache instance = new MetadataCache(file);
+
+        assertNull(instance.get(URL, "double_scalar"));
+        assertFalse(file.exists());
+        instance.save();
+        assertTrue(file.exists());
+    }
+
+    private static File createTempDir() {
+        try {
+            return Files.createTempDirectory("metadata").toFile();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.Before;
+import org.junit.Test;
+import wpn.hdri.ss.data.Method;
+import wpn.hdri.ss.data2.Attribute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class PollTaskTest {
+    private final StubClient client = new StubClient();
+    private final Attribute<?> attr0 = client.newAttribute(0, "a", 10L);
+    private final Attribute<?> attr1 = client.newAttribute(1, "b", 10L);
+    private final DataStorage storage = new DataStorage(2);
+
+    @Before
+    public void before() {
+        client.values.put("a", "a0");
+        client.values.put("b", "b0");
+    }
+
+    @Test
+    public void testRun_group() {
+        PollTask instance = new PollTask(Arrays.<Attribute<?>>asList(attr0, attr1), storage, true);
+
+        instance.run();
+
+        assertEquals(1, client.readAlls.get());
+        assertEquals(0, client.reads.get());
+        assertEquals("a0", storage.getSnapshot().get(0).getValue());
+        assertEquals("b0", storage.getSnapshot().get(1).getValue());
+    }
+
+    @Test
+    public void testRun_single() {
+        PollTask instance = new PollTask(attr0, storage, true);
+
+        instance.run();
+
+        assertEquals(0, client.readAlls.get());
+        assertEquals(1, client.reads.get());
+        assertEquals("a0", storage.getSnapshot().get(0).getValue());
+    }
+
+    @Test
+    public void testRun_groupPartialFailure() {
+        client.values.remove("a");
+        PollTask instance = new PollTask(Arrays.<Attribute<?>>asList(attr0, attr1), storage, true);
+
+        instance.run();
+
+        assertEquals(1, client.readAlls.get());
+        assertNull(storage.getSnapshot().get(0));
+        assertEquals("b0", storage.getSnapshot().get(1).getValue());
+    }
+
+    @Test
+    public void testRun_onlyDueAttributesAreRead() {
+        AdaptiveDelay idle = new AdaptiveDelay(10L, 40L, 1);
+        //attr0 has not changed for a while and is read on every other tick
+        idle.isDue();
+        idle.onRead(1L);
+        idle.isDue();
+        idle.onRead(1L);
+        assertEquals(20L, idle.getDelay());
+        PollTask instance = newPollTask(Arrays.<Attribute<?>>asList(attr0, attr1),
+                Arrays.asList(idle, new AdaptiveDelay(10L, 40L, 1)), 10L);
+
+        instance.run();
+        instance.run();
+
+        assertEquals(1, client.readAlls.get());
+        assertEquals(1, client.reads.get());
+    }
+
+    @Test
+    public void testDispatchTo_skipWhileRunning() {
+        List<Runnable> workers = new ArrayList<>();
+        PollTask instance = newPollTask(Arrays.<Attribute<?>>asList(attr0, attr1), null, 10L);
+        Runnable tick = instance.dispatchTo(workers::add, OverloadPolicy.SKIP);
+
+        tick.run();
+        tick.run();
+        tick.run();
+
+        assertEquals(1, workers.size());
+        assertEquals(2L, instance.getStats().getSkipped());
+
+        workers.remove(0).run();
+        tick.run();
+
+        assertEquals(1, workers.size());
+        assertEquals(1L, instance.getStats().getReads());
+    }
+
+    @Test
+    public void testDispatchTo_stretch() throws Exception {
+        List<Runnable> workers = new ArrayList<>();
+        PollTask instance = newPollTask(Arrays.<Attribute<?>>asList(attr0, attr1), null, 10L);
+        Runnable tick = instance.dispatchTo(workers::add, OverloadPolicy.STRETCH);
+
+        tick.run();
+        Thread.sleep(30L);
+        workers.remove(0).run();
+
+        assertEquals(1L, instance.getStats().getOverruns());
+        //the read has taken at least 3 periods, so as many ticks are skipped
+        for (int i = 0; i < 3; ++i) {
+            tick.run();
+        }
+        assertTrue(workers.isEmpty());
+        assertEquals(3L, instance.getStats().getSkipped());
+    }
+
+    @Test
+    public void testDispatchTo_events() throws Exception {
+        Attribute<?> evented = client.newAttribute(0, "a", 1L, Method.EventType.CHANGE);
+        List<Runnable> workers = new ArrayList<>();
+        PollTask instance = newPollTask(Collections.<Attribute<?>>singletonList(evented), null, 1L);
+        Runnable tick = instance.dispatchTo(workers::add, OverloadPolicy.EVENTS);
+
+        for (int i = 0; i < OverloadPolicy.OVERRUNS_TO_DEGRADE; ++i) {
+            assertFalse(instance.isDegraded());
+            tick.run();
+            Thread.sleep(5L);
+            workers.remove(0).run();
+        }
+
+        assertTrue(instance.isDegraded());
+        assertEquals(1, client.subscriptions.get());
+        tick.run();
+        assertTrue(workers.isEmpty());
+    }
+
+    @Test
+    public void testDispatchTo_probeThrows() {
+        ManualScheduler scheduler = new ManualScheduler();
+        CircuitBreaker breaker = newHalfOpenBreaker(scheduler);
+        List<Runnable> workers = new ArrayList<>();
+        PollTask instance = newPollTask(Arrays.<Attribute<?>>asList(attr0, attr1), null, 10L, breaker);
+        Runnable tick = instance.dispatchTo(workers::add, OverloadPolicy.SKIP);
+        client.failure = new IllegalStateException("unexpected type");
+
+        tick.run();
+        try {
+            workers.remove(0).run();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        scheduler.runNext();
+        client.failure = null;
+        tick.run();
+        workers.remove(0).run();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testDispatchTo_probeRejected() {
+        ManualScheduler scheduler = new ManualScheduler();
+        CircuitBreaker breaker = newHalfOpenBreaker(scheduler);
+        PollTask instance = newPollTask(Arrays.<Attribute<?>>asList(attr0, attr1), null, 10L, breaker);
+        Runnable tick = instance.dispatchTo(command -> {
+            throw new RejectedExecutionException();
+        }, OverloadPolicy.SKIP);
+
+        try {
+            tick.run();
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        scheduler.shutdownNow();
+    }
+
+    private static CircuitBreaker newHalfOpenBreaker(ManualScheduler scheduler) {
+        CircuitBreaker result = new CircuitBreaker(StubClient.URL, scheduler);
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; ++i) {
+            result.onFailure();
+        }
+        scheduler.runNext();
+        return result;
+    }
+
+    private PollTask newPollTask(List<Attribute<?>> attrs, List<AdaptiveDelay> delays, long period) {
+        return newPollTask(attrs, delays, period, null);
+    }
+
+    private PollTask newPollTask(List<Attribute<?>> attrs, List<AdaptiveDelay> delays, long period, CircuitBreaker breaker) {
+        return new PollTask(attrs, delays, period, breaker, storage, null, true);
+    }
+}
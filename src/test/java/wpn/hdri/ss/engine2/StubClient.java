@@ -0,0 +1,132 @@
+package wpn.hdri.ss.engine2;
+
+import wpn.hdri.ss.client.Client;
+import wpn.hdri.ss.client.ClientException;
+import wpn.hdri.ss.data.Method;
+import wpn.hdri.ss.data2.Attribute;
+import wpn.hdri.ss.data2.Interpolation;
+import wpn.hdri.ss.data2.SingleRecord;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves values from memory, so engine classes can be tested without a device
+ *
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class StubClient extends Client {
+    public static final String URL = "tango://localhost:10000/sys/tg_test/1";
+
+    /**
+     * Attribute name -> value, attributes that are not here fail
+     */
+    public final Map<String, Object> values = new ConcurrentHashMap<>();
+    public final AtomicInteger reads = new AtomicInteger();
+    public final AtomicInteger readAlls = new AtomicInteger();
+    public final AtomicInteger subscriptions = new AtomicInteger();
+    /**
+     * Attribute name -> how long its type query takes, ms
+     */
+    public final Map<String, Long> latencies = new ConcurrentHashMap<>();
+    public volatile long w_t = 1L;
+    /**
+     * Thrown by reads if set
+     */
+    public volatile RuntimeException failure;
+
+    public StubClient() {
+        super(URL);
+    }
+
+    /**
+     * @return attribute of this device that is read every delay ms
+     */
+    public Attribute<Object> newAttribute(int id, String name, long delay) {
+        return newAttribute(id, name, delay, null);
+    }
+
+    public Attribute<Object> newAttribute(int id, String name, long delay, Method.EventType eventType) {
+        return new Attribute<>(id, this, delay, eventType, Object.class, null, getDeviceName() + "/" + name, name, Interpolation.LAST);
+    }
+
+    @Override
+    protected EnumMap<Method.EventType, Object> mapEventTypes() {
+        return new EnumMap<>(Method.EventType.class);
+    }
+
+    @Override
+    public <T> SingleRecord<T> read(Attribute<T> attr) throws ClientException {
+        reads.incrementAndGet();
+        if (failure != null) throw failure;
+        return toRecord(attr);
+    }
+
+    @Override
+    public <T> CompletableFuture<SingleRecord<T>> readAsync(Attribute<T> attr) {
+        CompletableFuture<SingleRecord<T>> result = new CompletableFuture<>();
+        try {
+            result.complete(read(attr));
+        } catch (ClientException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    @Override
+    public List<SingleRecord<?>> readAll(List<Attribute<?>> attrs) throws ClientException {
+        readAlls.incrementAndGet();
+        if (failure != null) throw failure;
+        List<SingleRecord<?>> result = new ArrayList<>(attrs.size());
+        for (Attribute<?> attr : attrs) {
+            result.add(values.containsKey(attr.name) ? toRecord(attr) : null);
+        }
+        return result;
+    }
+
+    private <T> SingleRecord<T> toRecord(Attribute<T> attr) throws ClientException {
+        Object value = values.get(attr.name);
+        if (value == null) throw new ClientException("No such attribute: " + attr.name, null);
+        return new SingleRecord<>(attr, System.nanoTime(), w_t, (T) value);
+    }
+
+    @Override
+    public void subscribe(EventTask eventTask) {
+        subscriptions.incrementAndGet();
+    }
+
+    @Override
+    public void unsubscribe(Attribute<?> attr) {
+    }
+
+    @Override
+    public void connect() throws ClientException {
+    }
+
+    @Override
+    public boolean disconnect() {
+        return true;
+    }
+
+    @Override
+    public Class<?> getAttributeClass(String attrName) throws ClientException {
+        Long latency = latencies.get(attrName);
+        if (latency != null) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClientException("Interrupted", e);
+            }
+        }
+        Object value = values.get(attrName);
+        if (value == null) throw new ClientException("No such attribute: " + attrName, null);
+        return value.getClass();
+    }
+}
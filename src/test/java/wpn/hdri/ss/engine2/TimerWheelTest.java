@@ -0,0 +1,108 @@
+package wpn.hdri.ss.engine2;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Igor Khokhriakov <igor.khokhriakov@hzg.de>
+ * @since 18.10.2026
+ */
+public class TimerWheelTest {
+    private final TimerWheel instance = new TimerWheel(1L);
+
+    @After
+    public void after() {
+        instance.stop();
+    }
+
+    @Test
+    public void testAdd_sameDelayFormsGroup() throws Exception {
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch second = new CountDownLatch(1);
+
+        instance.add("first", 10L, first::countDown);
+        instance.add("second", 10L, second::countDown);
+
+        assertEquals(1, instance.getSchedule().size());
+        assertTrue(instance.getSchedule().get(0).startsWith("delay=10;tasks=2;"));
+        assertEquals(new HashSet<>(Arrays.asList("first", "second")), new HashSet<>(instance.getTasks(10L)));
+        assertTrue(first.await(1L, TimeUnit.SECONDS));
+        assertTrue(second.await(1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAdd_delayRoundedUpToTick() throws Exception {
+        TimerWheel wheel = new TimerWheel(5L);
+        try {
+            wheel.add("first", 7L, () -> {});
+            wheel.add("second", 10L, () -> {});
+
+            assertEquals(new HashSet<>(Arrays.asList("first", "second")), new HashSet<>(wheel.getTasks(10L)));
+        } finally {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testAdd_otherDelayFormsOtherGroup() throws Exception {
+        instance.add("first", 10L, () -> {});
+        instance.add("second", 20L, () -> {});
+
+        assertEquals(2, instance.getSchedule().size());
+        assertEquals(Collections.singletonList("first"), instance.getTasks(10L));
+        assertEquals(Collections.singletonList("second"), instance.getTasks(20L));
+    }
+
+    @Test
+    public void testAdd_sameNameMovesTask() throws Exception {
+        instance.add("first", 10L, () -> {});
+        instance.add("first", 20L, () -> {});
+
+        assertTrue(instance.getTasks(10L).isEmpty());
+        assertEquals(Collections.singletonList("first"), instance.getTasks(20L));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final AtomicInteger removed = new AtomicInteger();
+        final CountDownLatch kept = new CountDownLatch(3);
+        instance.add("removed", 1L, removed::incrementAndGet);
+        instance.add("kept", 1L, kept::countDown);
+
+        instance.remove("removed");
+        int runs = removed.get();
+
+        assertEquals(Collections.singletonList("kept"), instance.getTasks(1L));
+        assertTrue(kept.await(1L, TimeUnit.SECONDS));
+        //a tick may have been firing the group while the task was removed
+        assertTrue(removed.get() <= runs + 1);
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        final CountDownLatch fired = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        instance.add("task", 1L, () -> {
+            runs.incrementAndGet();
+            fired.countDown();
+        });
+        assertTrue(fired.await(1L, TimeUnit.SECONDS));
+
+        instance.stop();
+        Thread.sleep(20L);
+        int stopped = runs.get();
+        Thread.sleep(20L);
+
+        assertEquals(stopped, runs.get());
+    }
+}